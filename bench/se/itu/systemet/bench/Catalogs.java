@@ -0,0 +1,73 @@
+package se.itu.systemet.bench;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import se.itu.systemet.domain.Product;
+
+/**
+ * Creates reproducible, synthetic catalogs for the benchmarks,
+ * with roughly the shape of the real Systembolaget catalog: a few
+ * dozen product groups, a few hundred types and names with å, ä and ö.
+ */
+public class Catalogs {
+
+  private static final String[] WORDS = {
+    "Williams", "Caesar", "Augustus", "Renat", "Åbro", "Mariestads", "Château",
+    "Norrlands", "Guld", "Brewdog", "Punk", "Reserva", "Östra", "Älvdalens",
+    "lager", "IPA", "Brut", "Rosé", "Single", "Malt", "Öl", "Äppel"
+  };
+
+  // No instances, please
+  private Catalogs() {}
+
+  /**
+   * Returns a catalog with the specified number of products.
+   * The same size always gives the same catalog.
+   * @param size The number of products
+   * @return A catalog with size products
+   */
+  public static List<Product> products(int size) {
+    Random random = new Random(size);
+    List<Product> products = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      int group = random.nextInt(40);
+      products.add(new Product.Builder()
+                   .name(WORDS[random.nextInt(WORDS.length)] + " " +
+                         WORDS[random.nextInt(WORDS.length)] + " " + random.nextInt(1000))
+                   .price(Math.round((10 + random.nextDouble() * 990) * 100) / 100.0)
+                   .alcohol(Math.round(random.nextDouble() * 6000) / 100.0)
+                   .volume(new int[] { 330, 375, 500, 700, 750, 1000, 3000 }[random.nextInt(7)])
+                   .nr(100000 + i)
+                   .productGroup("Varugrupp " + group)
+                   .type("Typ " + group + "-" + random.nextInt(10))
+                   .build());
+    }
+    return products;
+  }
+
+  /**
+   * Returns a catalog as the UTF-8 JSON array the REST API responds with.
+   * @param products The products to encode
+   * @return The products as a JSON array
+   */
+  public static byte[] json(List<Product> products) {
+    StringBuilder json = new StringBuilder(products.size() * 140).append('[');
+    for (Product product : products) {
+      if (json.length() > 1) {
+        json.append(',');
+      }
+      json.append("{\"name\":\"").append(product.name())
+        .append("\",\"price\":").append(product.price())
+        .append(",\"alcohol\":").append(product.alcohol())
+        .append(",\"volume\":").append(product.volume())
+        .append(",\"nr\":").append(product.nr())
+        .append(",\"product_group\":\"").append(product.productGroup())
+        .append("\",\"type\":\"").append(product.type())
+        .append("\"}");
+    }
+    return json.append(']').toString().getBytes(StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,85 @@
+package se.itu.systemet.bench;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import se.itu.systemet.domain.Product;
+import se.itu.systemet.gui.ProductTableModel;
+import se.itu.systemet.util.ColumnScan;
+
+/**
+ * Selecting the rows within two wide ranges, and computing the
+ * derived "cl alc per SEK" column, with ColumnScan and with plain
+ * loops. Run with -jvmArgsAppend -Dsystemet.parallel.threshold=N to
+ * move the point where ColumnScan goes parallel.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ColumnScanBenchmark {
+
+  @Param({ "20000", "200000", "1000000" })
+  public int size;
+
+  private List<Product> products;
+  private double[] alcohol;
+  private double[] price;
+
+  @Setup
+  public void setUp() {
+    products = Catalogs.products(size);
+    alcohol = new double[size];
+    price = new double[size];
+    for (int i = 0; i < size; i++) {
+      alcohol[i] = products.get(i).alcohol();
+      price[i] = products.get(i).price();
+    }
+  }
+
+  @Benchmark
+  public int[] selectLoop() {
+    int[] hits = new int[size];
+    int count = 0;
+    for (int i = 0; i < size; i++) {
+      if (alcohol[i] >= 0 && alcohol[i] <= 40 && price[i] >= 20 && price[i] <= 900) {
+        hits[count++] = i;
+      }
+    }
+    return Arrays.copyOf(hits, count);
+  }
+
+  @Benchmark
+  public int[] selectColumnScan() {
+    return ColumnScan.rows(new ColumnScan.Filter(size).range(alcohol, 0, 40).range(price, 20, 900).select());
+  }
+
+  @Benchmark
+  public double[] deriveLoop() {
+    double[] values = new double[size];
+    for (int i = 0; i < size; i++) {
+      values[i] = ProductTableModel.clAlcPerSek(products.get(i));
+    }
+    return values;
+  }
+
+  @Benchmark
+  public double[] deriveColumnScan() {
+    return ColumnScan.compute(size, i -> ProductTableModel.clAlcPerSek(products.get(i)));
+  }
+}
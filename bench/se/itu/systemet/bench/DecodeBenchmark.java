@@ -0,0 +1,71 @@
+package se.itu.systemet.bench;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import se.itu.systemet.domain.Product;
+import se.itu.systemet.rest.ProductDecoder;
+
+/**
+ * Decoding a JSON response into Products, with ProductDecoder and
+ * with org.json (building a JSONArray first).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Thread)
+public class DecodeBenchmark {
+
+  @Param({ "1000", "20000", "200000" })
+  public int size;
+
+  private byte[] json;
+
+  @Setup
+  public void setUp() {
+    json = Catalogs.json(Catalogs.products(size));
+  }
+
+  @Benchmark
+  public List<Product> productDecoder() {
+    return ProductDecoder.decodeAll(new ByteArrayInputStream(json));
+  }
+
+  @Benchmark
+  public List<Product> orgJson() {
+    JSONArray array = new JSONArray(new String(json, StandardCharsets.UTF_8));
+    List<Product> products = new ArrayList<>(array.length());
+    for (int i = 0; i < array.length(); i++) {
+      JSONObject object = array.getJSONObject(i);
+      products.add(new Product.Builder()
+                   .name(object.getString("name"))
+                   .price(object.getDouble("price"))
+                   .alcohol(object.getDouble("alcohol"))
+                   .volume(object.getInt("volume"))
+                   .nr(object.optInt("nr"))
+                   .productGroup(object.optString("product_group", null))
+                   .type(object.optString("type", null))
+                   .build());
+    }
+    return products;
+  }
+}
@@ -0,0 +1,116 @@
+package se.itu.systemet.bench;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import se.itu.systemet.domain.Product;
+import se.itu.systemet.export.ChannelExporter;
+import se.itu.systemet.export.ExportFormat;
+
+/**
+ * Exporting the whole result in each ExportFormat to a channel which
+ * throws the bytes away - so what is measured is the cost of producing
+ * them - against a CSV written with String.format to a BufferedWriter.
+ * Run with -prof gc to see the allocation per export.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ExportBenchmark {
+
+  @Param({ "200000" })
+  public int size;
+
+  private List<Product> products;
+
+  @Setup
+  public void setUp() {
+    products = Catalogs.products(size);
+  }
+
+  @State(Scope.Thread)
+  public static class Format {
+    @Param({ "CSV", "JSON_LINES", "SQL", "COLUMNAR" })
+    public ExportFormat format;
+  }
+
+  @Benchmark
+  public long export(Format format) throws IOException {
+    NullChannel channel = new NullChannel();
+    try (ChannelExporter exporter = format.format.open(channel)) {
+      exporter.exportAll(products);
+    }
+    return channel.bytes;
+  }
+
+  @Benchmark
+  public long formattedCsv() throws IOException {
+    NullStream stream = new NullStream();
+    try (Writer out = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8))) {
+      out.write("nr,name,price,alcohol,volume,product_group,type\r\n");
+      for (Product product : products) {
+        out.write(String.format("%d,%s,%s,%s,%d,%s,%s\r\n", product.nr(), product.name(), product.price(),
+                                product.alcohol(), product.volume(), product.productGroup(), product.type()));
+      }
+    }
+    return stream.bytes;
+  }
+
+  private static class NullChannel implements WritableByteChannel {
+    long bytes;
+
+    @Override
+    public int write(ByteBuffer buffer) {
+      int count = buffer.remaining();
+      buffer.position(buffer.limit());
+      bytes += count;
+      return count;
+    }
+
+    @Override
+    public boolean isOpen() {
+      return true;
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+
+  private static class NullStream extends OutputStream {
+    long bytes;
+
+    @Override
+    public void write(int b) {
+      bytes++;
+    }
+
+    @Override
+    public void write(byte[] b, int offset, int length) {
+      bytes += length;
+    }
+  }
+}
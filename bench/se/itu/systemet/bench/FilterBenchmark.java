@@ -0,0 +1,78 @@
+package se.itu.systemet.bench;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import se.itu.systemet.domain.Product;
+import se.itu.systemet.rest.ApiAccess;
+import se.itu.systemet.rest.ApiAccessFactory;
+import se.itu.systemet.rest.Query;
+import se.itu.systemet.rest.QueryFactory;
+
+/**
+ * Filtering a whole catalog on alcohol and price ranges, locally with
+ * CatalogApiAccess and with a plain loop over the List for comparison.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FilterBenchmark {
+
+  @Param({ "1000", "20000", "200000" })
+  public int size;
+
+  private List<Product> products;
+  private ApiAccess catalog;
+  private Query narrow;
+  private Query wide;
+
+  @Setup
+  public void setUp() {
+    products = Catalogs.products(size);
+    catalog = ApiAccessFactory.catalog(query -> products);
+    narrow = query("4", "6", "100", "150");
+    wide = query("0", "40", "20", "900");
+    catalog.fetch(narrow); // loads the index
+  }
+
+  private static Query query(String minAlcohol, String maxAlcohol, String minPrice, String maxPrice) {
+    Query query = QueryFactory.getQuery();
+    query.addParam(new se.itu.systemet.rest.Param("min_alcohol", minAlcohol));
+    query.addParam(new se.itu.systemet.rest.Param("max_alcohol", maxAlcohol));
+    query.addParam(new se.itu.systemet.rest.Param("min_price", minPrice));
+    query.addParam(new se.itu.systemet.rest.Param("max_price", maxPrice));
+    return query;
+  }
+
+  @Benchmark
+  public List<Product> catalogNarrow() {
+    return catalog.fetch(narrow);
+  }
+
+  @Benchmark
+  public List<Product> catalogWide() {
+    return catalog.fetch(wide);
+  }
+
+  @Benchmark
+  public long scanNarrow() {
+    return products.stream()
+      .filter(p -> p.alcohol() >= 4 && p.alcohol() <= 6 && p.price() >= 100 && p.price() <= 150)
+      .count();
+  }
+}
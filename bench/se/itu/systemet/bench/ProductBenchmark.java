@@ -0,0 +1,81 @@
+package se.itu.systemet.bench;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import se.itu.systemet.domain.Product;
+
+/**
+ * Building, hashing and comparing single Products.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ProductBenchmark {
+
+  private Product product;
+  private Product equalProduct;
+  private Product otherProduct;
+
+  @Setup
+  public void setUp() {
+    List<Product> products = Catalogs.products(2);
+    product = products.get(0);
+    equalProduct = copy(product);
+    otherProduct = products.get(1);
+  }
+
+  private static Product copy(Product product) {
+    return new Product.Builder()
+      .name(new String(product.name()))
+      .price(product.price())
+      .alcohol(product.alcohol())
+      .volume(product.volume())
+      .nr(product.nr())
+      .productGroup(product.productGroup())
+      .type(product.type())
+      .build();
+  }
+
+  @Benchmark
+  public Product build() {
+    return new Product.Builder()
+      .name("Williams Caesar Augustus")
+      .price(16.90)
+      .alcohol(4.0)
+      .volume(330)
+      .nr(152115)
+      .productGroup("Öl")
+      .type("Ljus lager")
+      .build();
+  }
+
+  @Benchmark
+  public int hashCodeOf() {
+    return product.hashCode();
+  }
+
+  @Benchmark
+  public boolean equalsEqual() {
+    return product.equals(equalProduct);
+  }
+
+  @Benchmark
+  public boolean equalsOther() {
+    return product.equals(otherProduct);
+  }
+}
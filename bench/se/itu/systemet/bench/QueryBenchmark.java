@@ -0,0 +1,61 @@
+package se.itu.systemet.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import se.itu.systemet.rest.Param;
+import se.itu.systemet.rest.Query;
+import se.itu.systemet.rest.QueryFactory;
+
+/**
+ * Building a Query the way SearchGUI does for every search.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class QueryBenchmark {
+
+  private Query query;
+
+  @Setup
+  public void setUp() {
+    query = newQuery();
+  }
+
+  private static Query newQuery() {
+    Query query = QueryFactory.getQuery();
+    query.addParam(new Param("min_alcohol", "4.5"));
+    query.addParam(new Param("max_alcohol", "12"));
+    query.addParam(new Param("min_price", "100"));
+    query.addParam(new Param("max_price", "250"));
+    return query;
+  }
+
+  @Benchmark
+  public Query addParams() {
+    return newQuery();
+  }
+
+  @Benchmark
+  public String toQueryString() {
+    return query.toQueryString();
+  }
+
+  @Benchmark
+  public String addParamsAndToQueryString() {
+    return newQuery().toQueryString();
+  }
+}
@@ -0,0 +1,76 @@
+package se.itu.systemet.bench;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import se.itu.systemet.domain.Product;
+import se.itu.systemet.util.ColumnScan;
+
+/**
+ * Selecting the rows of a whole catalog within an alcohol, a price and
+ * a volume range into a bitmap, on one thread, with the scalar kernel
+ * and with the Vector API kernel. Each runs in its own JVM, since the
+ * kernel is chosen once, when ColumnScan is loaded.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@State(Scope.Thread)
+public class RangeKernelBenchmark {
+
+  private static final String SEQUENTIAL = "-Dsystemet.parallel.threshold=2147483647";
+  private static final String VECTOR = "--add-modules=jdk.incubator.vector";
+
+  @Param({ "20000", "200000", "1000000" })
+  public int size;
+
+  private double[] alcohol;
+  private double[] price;
+  private int[] volume;
+
+  @Setup
+  public void setUp() {
+    List<Product> products = Catalogs.products(size);
+    alcohol = new double[size];
+    price = new double[size];
+    volume = new int[size];
+    for (int i = 0; i < size; i++) {
+      alcohol[i] = products.get(i).alcohol();
+      price[i] = products.get(i).price();
+      volume[i] = products.get(i).volume();
+    }
+  }
+
+  private long[] select() {
+    return new ColumnScan.Filter(size)
+      .range(alcohol, 4, 40)
+      .range(price, 50, 500)
+      .range(volume, 500, 1000)
+      .select();
+  }
+
+  @Benchmark
+  @Fork(value = 1, jvmArgsAppend = { VECTOR, SEQUENTIAL, "-Dsystemet.vector=false" })
+  public long[] scalar() {
+    return select();
+  }
+
+  @Benchmark
+  @Fork(value = 1, jvmArgsAppend = { VECTOR, SEQUENTIAL })
+  public long[] vector() {
+    return select();
+  }
+}
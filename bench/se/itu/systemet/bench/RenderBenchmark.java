@@ -0,0 +1,96 @@
+package se.itu.systemet.bench;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.swing.JTable;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import se.itu.systemet.domain.Product;
+import se.itu.systemet.gui.ProductRowSorter;
+import se.itu.systemet.gui.ProductTable;
+import se.itu.systemet.gui.ProductTableModel;
+
+/**
+ * Painting one viewport of the result table, scrolled to the middle
+ * and sorted by price, as happens for every step of a scroll: a plain
+ * JTable with the default renderers against a ProductTable. The time
+ * should not grow with the number of rows.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class RenderBenchmark {
+
+  private static final int WIDTH = 1600;
+  private static final int VIEWPORT_HEIGHT = 1200;
+
+  @Param({ "1000", "200000" })
+  public int size;
+
+  private JTable plainTable;
+  private ProductTable productTable;
+  private BufferedImage image;
+  private Graphics2D graphics;
+
+  @Setup
+  public void setUp() {
+    List<Product> products = Catalogs.products(size);
+    ProductTableModel plainModel = new ProductTableModel(products);
+    plainTable = new JTable(plainModel);
+    plainTable.setRowHeight(30);
+    plainTable.setRowSorter(new ProductRowSorter(plainModel));
+    productTable = new ProductTable(new ProductTableModel(products));
+    for (JTable table : new JTable[] { plainTable, productTable }) {
+      table.getRowSorter().toggleSortOrder(ProductTableModel.PRICE_COLUMN);
+      table.setSize(WIDTH, table.getRowCount() * table.getRowHeight());
+      table.doLayout();
+    }
+    image = new BufferedImage(WIDTH, VIEWPORT_HEIGHT, BufferedImage.TYPE_INT_RGB);
+    graphics = image.createGraphics();
+  }
+
+  @TearDown
+  public void tearDown() {
+    graphics.dispose();
+  }
+
+  @Benchmark
+  public BufferedImage plainTable() {
+    return paintMiddle(plainTable);
+  }
+
+  @Benchmark
+  public BufferedImage productTable() {
+    return paintMiddle(productTable);
+  }
+
+  private BufferedImage paintMiddle(JTable table) {
+    int top = table.getRowCount() / 2 * table.getRowHeight();
+    Graphics2D g = (Graphics2D)graphics.create();
+    try {
+      g.translate(0, -top);
+      g.setClip(0, top, WIDTH, VIEWPORT_HEIGHT);
+      table.paint(g);
+    } finally {
+      g.dispose();
+    }
+    return image;
+  }
+}
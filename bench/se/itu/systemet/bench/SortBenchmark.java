@@ -0,0 +1,73 @@
+package se.itu.systemet.bench;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import se.itu.systemet.domain.Product;
+
+/**
+ * Sorting whole catalogs with the Product comparators.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class SortBenchmark {
+
+  @Param({ "1000", "20000", "200000" })
+  public int size;
+
+  private List<Product> products;
+
+  @Setup
+  public void setUp() {
+    products = Catalogs.products(size);
+  }
+
+  private List<Product> sorted(Comparator<Product> order) {
+    List<Product> copy = new ArrayList<>(products);
+    copy.sort(order);
+    return copy;
+  }
+
+  @Benchmark
+  public List<Product> nameOrder() {
+    return sorted(Product.NAME_ORDER);
+  }
+
+  @Benchmark
+  public List<Product> nameCaseInsensitiveOrder() {
+    return sorted(Product.NAME_CASE_INSENSITIVE_ORDER);
+  }
+
+  @Benchmark
+  public List<Product> priceOrder() {
+    return sorted(Product.PRICE_ORDER);
+  }
+
+  @Benchmark
+  public List<Product> alcoholOrder() {
+    return sorted(Product.ALCOHOL_ORDER);
+  }
+
+  @Benchmark
+  public List<Product> volumeOrder() {
+    return sorted(Product.VOLUME_ORDER);
+  }
+}
@@ -0,0 +1,70 @@
+package se.itu.systemet.bench;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import se.itu.systemet.domain.Product;
+import se.itu.systemet.gui.ProductTableModel;
+
+/**
+ * Creating and updating the ProductTableModel, as SearchGUI does
+ * for every result.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TableModelBenchmark {
+
+  @Param({ "1000", "20000", "200000" })
+  public int size;
+
+  private List<Product> products;
+  private List<Product> cheaperHalf;
+
+  @Setup
+  public void setUp() {
+    products = Catalogs.products(size);
+    cheaperHalf = products.subList(0, size / 2);
+  }
+
+  @Benchmark
+  public ProductTableModel construct() {
+    return new ProductTableModel(products);
+  }
+
+  /* Construction plus reading every cell once, like a full repaint would */
+  @Benchmark
+  public void constructAndReadAll(Blackhole blackhole) {
+    ProductTableModel model = new ProductTableModel(products);
+    for (int row = 0; row < model.getRowCount(); row++) {
+      for (int col = 0; col < model.getColumnCount(); col++) {
+        blackhole.consume(model.getValueAt(row, col));
+      }
+    }
+  }
+
+  /* An incremental update dropping half of the rows, and back again */
+  @Benchmark
+  public ProductTableModel setProducts() {
+    ProductTableModel model = new ProductTableModel(products);
+    model.setProducts(cheaperHalf);
+    model.setProducts(products);
+    return model;
+  }
+}
@@ -10,4 +10,9 @@ fi
 CP=".${PATHSEP}lib/org.json.jar"
 #CP="."
 
-javac -cp $CP se/itu/systemet/main/*.java
+javac -encoding UTF-8 -cp $CP se/itu/systemet/main/*.java
+
+# The Vector API filter kernel is loaded by reflection, so it is compiled
+# on its own - with a JDK without jdk.incubator.vector, the scalar kernel is used
+javac -encoding UTF-8 --add-modules jdk.incubator.vector -cp $CP se/itu/systemet/util/VectorRangeKernel.java 2>/dev/null \
+    || echo "No Vector API in this JDK - the filters will use the scalar kernel"
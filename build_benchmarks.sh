@@ -0,0 +1,21 @@
+#!/bin/bash
+
+# The benchmarks need JMH in bench/lib - run ./download_jmh_jars.sh first
+
+PATHSEP=":"
+if [[ $OS == "Windows_NT" ]] || [[ $OSTYPE == "cygwin" ]]
+then
+    PATHSEP=";"
+fi
+JMH="bench/lib/jmh-core.jar${PATHSEP}bench/lib/jopt-simple.jar${PATHSEP}bench/lib/commons-math3.jar"
+CP="lib/org.json.jar${PATHSEP}${JMH}"
+
+rm -rf bench/classes
+mkdir -p bench/classes
+javac -encoding UTF-8 -cp "$CP" -sourcepath ".${PATHSEP}bench" \
+      -processorpath "bench/lib/jmh-generator-annprocess.jar${PATHSEP}${JMH}" \
+      -implicit:class -d bench/classes $(find bench/se -name '*.java')
+# The Vector API kernel is loaded by reflection, so it is compiled on its own
+javac -encoding UTF-8 --add-modules jdk.incubator.vector -cp bench/classes \
+      -d bench/classes se/itu/systemet/util/VectorRangeKernel.java 2>/dev/null \
+    || echo "No Vector API in this JDK - RangeKernelBenchmark.vector will use the scalar kernel"
@@ -0,0 +1,13 @@
+#!/bin/bash
+
+DEST_DIR=bench/lib
+mkdir -p ${DEST_DIR}
+
+MAVEN='https://repo1.maven.org/maven2'
+JMH_VERSION=1.37
+
+echo "Downloading JMH (GPLv2 with Classpath Exception) and its dependencies from maven..."
+wget "${MAVEN}/org/openjdk/jmh/jmh-core/${JMH_VERSION}/jmh-core-${JMH_VERSION}.jar" -O ${DEST_DIR}/jmh-core.jar
+wget "${MAVEN}/org/openjdk/jmh/jmh-generator-annprocess/${JMH_VERSION}/jmh-generator-annprocess-${JMH_VERSION}.jar" -O ${DEST_DIR}/jmh-generator-annprocess.jar
+wget "${MAVEN}/net/sf/jopt-simple/jopt-simple/5.0.4/jopt-simple-5.0.4.jar" -O ${DEST_DIR}/jopt-simple.jar
+wget "${MAVEN}/org/apache/commons/commons-math3/3.6.1/commons-math3-3.6.1.jar" -O ${DEST_DIR}/commons-math3.jar
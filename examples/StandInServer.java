@@ -0,0 +1,291 @@
+package examples;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONObject;
+
+import se.itu.systemet.domain.Collation;
+import se.itu.systemet.domain.Product;
+import se.itu.systemet.rest.CatalogChanges;
+
+/**
+ * A local stand-in for the product REST API, serving a synthetic
+ * catalog as JSON on http://localhost:PORT/search/products/all
+ *
+ * Usage: java examples.StandInServer [port] [number of products]
+ *
+ * With -Dstandin.latency.millis=N, each response is delayed by N ms,
+ * like the round-trip to a server far away. Faults can be injected
+ * for trying out ResilientApiAccess: -Dstandin.failure.rate=0.3 makes
+ * 30 % of the requests fail with 503 Service Unavailable, and
+ * -Dstandin.hang.rate=0.1 makes 10 % of them hang for a minute.
+ *
+ * With -Dstandin.changes.per.second=N, the catalog changes N times a
+ * second - mostly new prices, some removed and some new products - and
+ * its version goes up by one every second. Every response tells the
+ * version in the header X-Catalog-Version, and ?changed_since=V sends
+ * only the products changed since version V, with the numbers of the
+ * removed ones in X-Catalog-Removed (see CatalogChanges).
+ */
+public class StandInServer {
+
+  private static final String[] GROUPS = { "Öl", "Rött vin", "Vitt vin", "Cider", "Whisky", "Okryddad sprit" };
+  private static final String[] TYPES = { "Ljus lager", "Syrlig öl", "Fylligt & smakrikt", "Torr", "Maltwhisky", "Vodka" };
+  private static final String[] WORDS = { "Williams", "Caesar", "Augustus", "Renat", "Åbro", "Mariestads",
+                                          "Château", "Norrlands", "Guld", "Brewdog", "Punk", "Reserva" };
+
+  private volatile List<Product> catalog; // replaced, never changed, by change()
+  private long version; // the rest is guarded by this
+  private Map<Integer, Long> changedAt = new HashMap<>(); // the version each product was added or updated in
+  private Map<Integer, Long> removedAt = new HashMap<>(); // the version each product was removed in
+  private int nextNr;
+  private Random churn = new Random(42);
+  private int changesPerSecond = Integer.getInteger("standin.changes.per.second", 0);
+  private long latencyMillis = Long.getLong("standin.latency.millis", 0);
+  private double failureRate = Double.parseDouble(System.getProperty("standin.failure.rate", "0"));
+  private double hangRate = Double.parseDouble(System.getProperty("standin.hang.rate", "0"));
+
+  public StandInServer(int size) {
+    catalog = catalog(size);
+    nextNr = 100000 + size;
+  }
+
+  public static void main(String[] args) throws IOException {
+    int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+    int size = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+    new StandInServer(size).start(port);
+    System.out.println("Serving " + size + " products on http://localhost:" + port + "/search/products/all");
+  }
+
+  public HttpServer start(int port) throws IOException {
+    HttpServer server = HttpServer.create(new InetSocketAddress(port), 0);
+    server.createContext("/search/products/all", this::handle);
+    server.setExecutor(Executors.newFixedThreadPool(8));
+    server.start();
+    if (changesPerSecond > 0) {
+      Executors.newSingleThreadScheduledExecutor(task -> {
+          Thread thread = new Thread(task, "standin-churn");
+          thread.setDaemon(true);
+          return thread;
+        }).scheduleAtFixedRate(() -> change(changesPerSecond), 1, 1, TimeUnit.SECONDS);
+    }
+    return server;
+  }
+
+  /* Creates a reproducible, synthetic catalog */
+  public static List<Product> catalog(int size) {
+    Random random = new Random(4711);
+    List<Product> products = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      int group = random.nextInt(GROUPS.length);
+      products.add(new Product.Builder()
+                   .name(WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)] + " " + i)
+                   .price(Math.round((10 + random.nextDouble() * 990) * 100) / 100.0)
+                   .alcohol(Math.round(random.nextDouble() * 6000) / 100.0)
+                   .volume(new int[] { 330, 500, 700, 750, 1000 }[random.nextInt(5)])
+                   .nr(100000 + i)
+                   .productGroup(GROUPS[group])
+                   .type(TYPES[group])
+                   .build());
+    }
+    return products;
+  }
+
+  /*
+   * Makes count changes, as the next version: about 80 % new prices,
+   * 10 % removed products and 10 % new ones (at the end).
+   */
+  synchronized void change(int count) {
+    List<Product> products = new ArrayList<>(catalog);
+    version++;
+    for (int i = 0; i < count && !products.isEmpty(); i++) {
+      int kind = churn.nextInt(10);
+      int position = churn.nextInt(products.size());
+      Product product = products.get(position);
+      if (kind == 0) {
+        products.remove(position);
+        changedAt.remove(product.nr());
+        removedAt.put(product.nr(), version);
+        continue;
+      }
+      Product.Builder changed = new Product.Builder()
+        .name(product.name())
+        .price(Math.round((10 + churn.nextDouble() * 990) * 100) / 100.0)
+        .alcohol(product.alcohol())
+        .volume(product.volume())
+        .productGroup(product.productGroup())
+        .type(product.type());
+      if (kind == 1) {
+        Product added = changed.nr(nextNr++).build();
+        products.add(added);
+        changedAt.put(added.nr(), version);
+      } else {
+        products.set(position, changed.nr(product.nr()).build());
+        changedAt.put(product.nr(), version);
+      }
+    }
+    catalog = products;
+  }
+
+  /*
+   * The products to send for changed_since (null for the whole
+   * catalog), and the headers telling what they are
+   */
+  private synchronized List<Product> changes(String changedSince, Map<String, String> headers) {
+    headers.put(CatalogChanges.VERSION_HEADER, Long.toString(version));
+    long since = changedSince == null ? CatalogChanges.UNKNOWN_VERSION : Long.parseLong(changedSince);
+    int count = 0;
+    for (long at : changedAt.values()) {
+      count += at > since ? 1 : 0;
+    }
+    if (since < 0 || since > version || count > catalog.size() / 2) {
+      headers.put(CatalogChanges.FULL_HEADER, "true");
+      return null;
+    }
+    StringBuilder removed = new StringBuilder();
+    removedAt.forEach((nr, at) -> {
+        if (at > since) {
+          removed.append(removed.length() > 0 ? "," : "").append(nr);
+        }
+      });
+    headers.put(CatalogChanges.REMOVED_HEADER, removed.toString());
+    List<Product> changed = new ArrayList<>(count);
+    for (Product product : catalog) {
+      if (changedAt.getOrDefault(product.nr(), -1L) > since) {
+        changed.add(product);
+      }
+    }
+    return changed;
+  }
+
+  /* Streams the matching products, so that clients can start on the first ones early */
+  private void handle(HttpExchange exchange) throws IOException {
+    Map<String, String> params = params(exchange.getRequestURI().getRawQuery());
+    double fault = Math.random();
+    sleep(fault < hangRate ? 60_000 : latencyMillis);
+    if (fault >= hangRate && fault < hangRate + failureRate) {
+      exchange.sendResponseHeaders(503, -1);
+      exchange.close();
+      return;
+    }
+    exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+    List<Product> products = catalog;
+    Map<String, String> headers = new HashMap<>();
+    try {
+      List<Product> changed = changes(params.remove(CatalogChanges.CHANGED_SINCE), headers);
+      if (changed != null) {
+        products = changed;
+      }
+      if (!products.isEmpty()) {
+        matches(products.get(0), params); // fails early on params which aren't numbers
+      }
+    } catch (NumberFormatException e) {
+      exchange.sendResponseHeaders(400, -1);
+      exchange.close();
+      return;
+    }
+    headers.forEach(exchange.getResponseHeaders()::set);
+    exchange.sendResponseHeaders(200, 0); // chunked
+    try (Writer out = new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(),
+                                                                StandardCharsets.UTF_8))) {
+      out.write('[');
+      boolean first = true;
+      for (Product product : products) {
+        if (matches(product, params)) {
+          if (!first) {
+            out.write(',');
+          }
+          out.write(toJson(product).toString());
+          first = false;
+        }
+      }
+      out.write(']');
+    }
+  }
+
+  private static void sleep(long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static boolean matches(Product product, Map<String, String> params) {
+    return hasName(product, params.get("name")) &&
+      isAnyOf(product.productGroup(), params.get("product_group")) &&
+      isAnyOf(product.type(), params.get("type")) &&
+      atLeast(product.alcohol(), params.get("min_alcohol")) &&
+      atMost(product.alcohol(), params.get("max_alcohol")) &&
+      atLeast(product.price(), params.get("min_price")) &&
+      atMost(product.price(), params.get("max_price"));
+  }
+
+  /* Same as CatalogApiAccess: contains, ignoring case and accents, or starts with for "text*" */
+  private static boolean hasName(Product product, String name) {
+    if (name == null) {
+      return true;
+    }
+    String key = Collation.key(name.trim());
+    if (key.endsWith("*")) {
+      return product.nameKey().startsWith(key.substring(0, key.length() - 1));
+    }
+    return product.nameKey().contains(key);
+  }
+
+  /* True if value is one of the values separated by | */
+  private static boolean isAnyOf(String value, String values) {
+    return values == null || Arrays.asList(values.split("\\|")).contains(value);
+  }
+
+  private static boolean atLeast(double value, String limit) {
+    return limit == null || value >= Double.parseDouble(limit);
+  }
+
+  private static boolean atMost(double value, String limit) {
+    return limit == null || value <= Double.parseDouble(limit);
+  }
+
+  private static JSONObject toJson(Product product) {
+    return new JSONObject()
+      .put("name", product.name())
+      .put("price", product.price())
+      .put("alcohol", product.alcohol())
+      .put("volume", product.volume())
+      .put("nr", product.nr())
+      .put("product_group", product.productGroup())
+      .put("type", product.type());
+  }
+
+  private static Map<String, String> params(String query) {
+    Map<String, String> params = new HashMap<>();
+    if (query == null) {
+      return params;
+    }
+    for (String pair : query.split("&")) {
+      int eq = pair.indexOf('=');
+      if (eq > 0) {
+        params.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                   URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+      }
+    }
+    return params;
+  }
+}
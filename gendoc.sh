@@ -1,4 +1,4 @@
 #!/bin/bash
 
-PACKAGES="se.itu.systemet.domain se.itu.systemet.gui se.itu.systemet.rest"
+PACKAGES="se.itu.systemet.domain se.itu.systemet.gui se.itu.systemet.rest se.itu.systemet.storage se.itu.systemet.util"
 javadoc  -d docs/ -link "https://docs.oracle.com/javase/8/docs/api/" $PACKAGES
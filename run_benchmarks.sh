@@ -0,0 +1,14 @@
+#!/bin/bash
+
+# Runs all benchmarks, or those matching the arguments, e.g.
+#   ./run_benchmarks.sh DecodeBenchmark -p size=20000
+# Build them first with ./build_benchmarks.sh
+
+PATHSEP=":"
+if [[ $OS == "Windows_NT" ]] || [[ $OSTYPE == "cygwin" ]]
+then
+    PATHSEP=";"
+fi
+JMH="bench/lib/jmh-core.jar${PATHSEP}bench/lib/jopt-simple.jar${PATHSEP}bench/lib/commons-math3.jar"
+CP="bench/classes${PATHSEP}lib/org.json.jar${PATHSEP}${JMH}"
+java -cp "$CP" org.openjdk.jmh.Main "$@"
@@ -7,4 +7,9 @@ then
 fi
 CP=".${PATHSEP}lib/org.json.jar"
 #CP="."
-java -cp $CP se.itu.systemet.main.ProductSearch
+VECTOR=""
+if [[ -f se/itu/systemet/util/VectorRangeKernel.class ]]
+then
+    VECTOR="--add-modules jdk.incubator.vector" # built by build.sh if the JDK has it
+fi
+java $VECTOR -cp $CP se.itu.systemet.main.ProductSearch
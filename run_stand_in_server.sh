@@ -0,0 +1,9 @@
+#!/bin/bash
+
+PATHSEP=":"
+if [[ $OS == "Windows_NT" ]] || [[ $OSTYPE == "cygwin" ]]
+then
+    PATHSEP=";"
+fi
+CP=".${PATHSEP}lib/org.json.jar"
+javac -encoding UTF-8 -cp ${CP} examples/StandInServer.java && java -cp ${CP} examples.StandInServer "$@"
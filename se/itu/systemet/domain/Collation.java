@@ -0,0 +1,91 @@
+package se.itu.systemet.domain;
+
+/**
+ * <p>Creates collation keys for names: Strings which, compared with
+ * String.compareTo(), give a case insensitive, Swedish ordering.</p>
+ *
+ * <p>Letters are folded to lower case, and accented letters to the
+ * letter they are sorted as in Swedish: é and è as e, ü as y, æ as ä
+ * and ø as ö. The Swedish letters å, ä and ö are mapped to characters
+ * which sort after z, in that order. So "Zinfandel" comes before
+ * "Åbro", which comes before "Äppelcider" and "Öl".</p>
+ *
+ * <p>Computing a key allocates, so keys are meant to be computed once
+ * and kept, as Product does for its name.</p>
+ */
+public class Collation {
+
+  // å, ä and ö sort after z - we use private use characters for them
+  private static final char A_RING = '\uE000';
+  private static final char A_DIAERESIS = '\uE001';
+  private static final char O_DIAERESIS = '\uE002';
+
+  // The folded character for each of the first 256 characters
+  private static final char[] FOLDED = new char[256];
+
+  static {
+    for (char c = 0; c < 256; c++) {
+      FOLDED[c] = Character.toLowerCase(c);
+    }
+    fold("àáâã", 'a');
+    fold("ÀÁÂÃ", 'a');
+    fold("ç", 'c');
+    fold("Ç", 'c');
+    fold("èéêë", 'e');
+    fold("ÈÉÊË", 'e');
+    fold("ìíîï", 'i');
+    fold("ÌÍÎÏ", 'i');
+    fold("ñ", 'n');
+    fold("Ñ", 'n');
+    fold("òóôõ", 'o');
+    fold("ÒÓÔÕ", 'o');
+    fold("ùúû", 'u');
+    fold("ÙÚÛ", 'u');
+    fold("üýÿ", 'y');
+    fold("ÜÝ", 'y');
+    fold("åÅ", A_RING);
+    fold("äÄæÆ", A_DIAERESIS);
+    fold("öÖøØ", O_DIAERESIS);
+  }
+
+  private static void fold(String letters, char to) {
+    for (int i = 0; i < letters.length(); i++) {
+      FOLDED[letters.charAt(i)] = to;
+    }
+  }
+
+  // No instances, please
+  private Collation() {}
+
+  /**
+   * Returns the collation key for a String. If the String is already
+   * its own key (e.g. it is in lower case ASCII), it is returned as is.
+   * @param s The String to compute the key for
+   * @return The collation key for s
+   */
+  public static String key(String s) {
+    int length = s.length();
+    int i = 0;
+    while (i < length && fold(s.charAt(i)) == s.charAt(i)) {
+      i++;
+    }
+    if (i == length) {
+      return s;
+    }
+    char[] key = new char[length];
+    s.getChars(0, i, key, 0);
+    for (; i < length; i++) {
+      key[i] = fold(s.charAt(i));
+    }
+    return new String(key);
+  }
+
+  /**
+   * Returns the folded version of a character.
+   * @param c The character to fold
+   * @return The character c is sorted as
+   */
+  public static char fold(char c) {
+    return c < 256 ? FOLDED[c] : Character.toLowerCase(c);
+  }
+}
@@ -0,0 +1,44 @@
+package se.itu.systemet.domain;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>Keeps one canonical instance of each product group and type String.</p>
+ *
+ * <p>The whole catalog only has a few dozen product groups
+ * (Varugrupp) and a few hundred types (Typ), but tens of thousands
+ * of Products. Product.Builder interns both values here, so all
+ * Products with the same group share one String, and two groups
+ * can be compared with == instead of equals().</p>
+ *
+ * <p>Values are never removed, so only intern Strings from a small,
+ * fixed set of values - not names or other free text.</p>
+ */
+public class Interner {
+
+  private static final ConcurrentHashMap<String, String> VALUES = new ConcurrentHashMap<>();
+
+  // No instances, please
+  private Interner() {}
+
+  /**
+   * Returns the canonical instance of a String.
+   * @param value The String to intern, or null
+   * @return The canonical instance equal to value, or null if value is null
+   */
+  public static String intern(String value) {
+    if (value == null) {
+      return null;
+    }
+    String canonical = VALUES.putIfAbsent(value, value);
+    return canonical == null ? value : canonical;
+  }
+
+  /**
+   * Returns the number of distinct Strings interned so far.
+   * @return The number of distinct Strings interned so far
+   */
+  public static int size() {
+    return VALUES.size();
+  }
+}
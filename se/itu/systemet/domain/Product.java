@@ -51,6 +51,7 @@ public class Product {
   private int nr; // XML: <nr>nnn</nr> unique nr in the catalog
   private String productGroup; // e.g. <Varugrupp>Okryddad sprit</Varugrupp>
   private String type; // e.g. <Typ>Syrlig öl</Typ>
+  private String nameKey; // collation key of name, computed when first needed
   
   /**
    * Defines the interface for objects we can export a
@@ -123,18 +124,20 @@ public class Product {
     }
 
     /**
-     *
+     * Provides the product group, which is interned (see Interner)
+     * so that all Products in a group share one String
      */
     public Builder productGroup(String productGroup) {
-      this.productGroup = productGroup;
+      this.productGroup = Interner.intern(productGroup);
       return this;
     }
 
     /**
-     *
+     * Provides the type, which is interned (see Interner)
+     * so that all Products of a type share one String
      */
     public Builder type(String type) {
-      this.type = type;
+      this.type = Interner.intern(type);
       return this;
     }
     
@@ -197,22 +200,24 @@ public class Product {
    */
   public static final Comparator<Product> NAME_ORDER = Comparator.comparing(Product::name);
   /**
-   * A Comparator that orders Products based on their name, ignoring case.
+   * A Comparator that orders Products based on their name, ignoring case
+   * and using the Swedish alphabet (å, ä and ö after z). Uses the cached
+   * nameKey() of each Product, so comparing doesn't create any objects.
    */
   public static final Comparator<Product> NAME_CASE_INSENSITIVE_ORDER =
-    (p1, p2) -> p1.name().toLowerCase().compareTo(p2.name().toLowerCase());
+    (p1, p2) -> p1.nameKey().compareTo(p2.nameKey());
   /**
    * A Comparator that orders Products based on their price.
    */
-  public static final Comparator<Product> PRICE_ORDER = Comparator.comparing(Product::price);
+  public static final Comparator<Product> PRICE_ORDER = (p1, p2) -> Double.compare(p1.price, p2.price);
   /**
    * A Comparator that orders Products based on their alcohol level.
    */
-  public static final Comparator<Product> ALCOHOL_ORDER = Comparator.comparing(Product::alcohol);
+  public static final Comparator<Product> ALCOHOL_ORDER = (p1, p2) -> Double.compare(p1.alcohol, p2.alcohol);
   /**
    * A Comparator that orders Products based on their volume.
    */
-  public static final Comparator<Product> VOLUME_ORDER = Comparator.comparing(Product::volume);
+  public static final Comparator<Product> VOLUME_ORDER = (p1, p2) -> Integer.compare(p1.volume, p2.volume);
   
   /**
    * Constructs a new Product.
@@ -234,6 +239,21 @@ public class Product {
    */
   public String name() { return name; }
 
+  /**
+   * Returns the collation key of the name of this Product, see Collation.
+   * The key is computed the first time it is asked for, and then kept.
+   * @return The collation key of the name of this Product
+   */
+  public String nameKey() {
+    String key = nameKey;
+    if (key == null) {
+      // A race here only means that the key is computed twice
+      key = Collation.key(name);
+      nameKey = key;
+    }
+    return key;
+  }
+
   /**
    * Returns the alcohol level of this Product
    * @return The alcohol level of this Product
@@ -253,7 +273,9 @@ public class Product {
   public int volume() { return volume; }
 
   /**
-   * Returns the product group of this Product
+   * Returns the product group of this Product. For a Product made by
+   * a Builder, this is the canonical (interned) instance, so it may
+   * be compared to other product groups with ==.
    * @return The product group of this Product
    */
   public String productGroup() {
@@ -261,7 +283,9 @@ public class Product {
   }
 
   /**
-   * Returns the product type of this Product
+   * Returns the product type of this Product. For a Product made by
+   * a Builder, this is the canonical (interned) instance, so it may
+   * be compared to other types with ==.
    * @return The product type of this Product
    */
   public String type() {
@@ -0,0 +1,183 @@
+package se.itu.systemet.export;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+import se.itu.systemet.domain.Product;
+
+/**
+ * <p>A Product.Exporter which writes the Products exported to it, one
+ * row each, to a channel - e.g. a FileChannel.</p>
+ *
+ * <p>Product.export() hands over the fields of a Product in its own
+ * order; they are kept in the fields of the exporter, and written in
+ * the order of the format by writeRow() once the whole Product has
+ * been exported. The rows are written to a direct ByteBuffer, which is
+ * written to the channel whenever it is full. Nothing is allocated per
+ * row here, so formats which write straight into the buffer run as
+ * fast as the channel takes the bytes.</p>
+ *
+ * <p>Typical use:
+ *<pre>
+ * try (ChannelExporter exporter = ExportFormat.CSV.open(channel)) {
+ *   exporter.exportAll(products);
+ * }
+ *</pre>
+ * </p>
+ */
+public abstract class ChannelExporter implements Product.Exporter, Closeable {
+
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  private WritableByteChannel channel;
+  private ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+  private boolean started;
+  private int rows;
+
+  // The fields of the Product being exported
+  String name;
+  double price;
+  double alcohol;
+  int volume;
+  int nr;
+  String productGroup;
+  String type;
+
+  /**
+   * Creates a new ChannelExporter writing to a channel.
+   * @param channel The channel to write to, which is closed by close()
+   */
+  protected ChannelExporter(WritableByteChannel channel) {
+    this.channel = channel;
+  }
+
+  /**
+   * Writes a Product as a row.
+   * @param product The Product to write
+   * @throws IOException if the channel can't be written
+   */
+  public void export(Product product) throws IOException {
+    start();
+    product.export(this);
+    writeRow();
+    rows++;
+  }
+
+  /**
+   * Writes Products as rows, in order.
+   * @param products The Products to write
+   * @throws IOException if the channel can't be written
+   */
+  public void exportAll(Iterable<Product> products) throws IOException {
+    for (Product product : products) {
+      export(product);
+    }
+  }
+
+  /**
+   * Returns the number of rows written so far.
+   * @return The number of rows written
+   */
+  public int rows() {
+    return rows;
+  }
+
+  /**
+   * Writes what comes after the rows, writes out the buffer and closes
+   * the channel.
+   * @throws IOException if the channel can't be written
+   */
+  @Override
+  public void close() throws IOException {
+    try {
+      start();
+      end();
+      flush();
+    } finally {
+      channel.close();
+    }
+  }
+
+  private void start() throws IOException {
+    if (!started) {
+      started = true;
+      begin();
+    }
+  }
+
+  /**
+   * Writes what comes before the rows, e.g. a header. Does nothing
+   * unless overridden.
+   * @throws IOException if the channel can't be written
+   */
+  void begin() throws IOException {
+  }
+
+  /**
+   * Writes the fields of the Product just exported as a row.
+   * @throws IOException if the channel can't be written
+   */
+  abstract void writeRow() throws IOException;
+
+  /**
+   * Writes what comes after the rows. Does nothing unless overridden.
+   * @throws IOException if the channel can't be written
+   */
+  void end() throws IOException {
+  }
+
+  /* The buffer to write to - flush() it when it is full */
+  ByteBuffer buffer() {
+    return buffer;
+  }
+
+  WritableByteChannel channel() {
+    return channel;
+  }
+
+  /* Writes the buffer to the channel, and empties it */
+  void flush() throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    buffer.clear();
+  }
+
+  @Override
+  public void addName(String name) {
+    this.name = name;
+  }
+
+  @Override
+  public void addPrice(double price) {
+    this.price = price;
+  }
+
+  @Override
+  public void addAlcohol(double alcohol) {
+    this.alcohol = alcohol;
+  }
+
+  @Override
+  public void addVolume(int volume) {
+    this.volume = volume;
+  }
+
+  @Override
+  public void addNr(int nr) {
+    this.nr = nr;
+  }
+
+  @Override
+  public void addProductGroup(String productGroup) {
+    this.productGroup = productGroup;
+  }
+
+  @Override
+  public void addType(String type) {
+    this.type = type;
+  }
+}
@@ -0,0 +1,31 @@
+package se.itu.systemet.export;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+
+import se.itu.systemet.storage.CatalogColumns;
+
+/**
+ * Writes Products in the binary, columnar layout of a CatalogSnapshot
+ * (see CatalogColumns), so the file can be loaded like a snapshot. The
+ * layout is by column, so the rows are gathered in primitive columns
+ * and written when the exporter is closed.
+ */
+class ColumnarExporter extends ChannelExporter {
+
+  private CatalogColumns columns = new CatalogColumns();
+
+  ColumnarExporter(WritableByteChannel channel) {
+    super(channel);
+  }
+
+  @Override
+  void writeRow() {
+    columns.add(name, price, alcohol, volume, nr, productGroup, type);
+  }
+
+  @Override
+  void end() throws IOException {
+    columns.write(channel());
+  }
+}
@@ -0,0 +1,67 @@
+package se.itu.systemet.export;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Writes Products as CSV (RFC 4180): a header line, then one line per
+ * Product. Fields with commas, quotes or line breaks are quoted, and
+ * missing values are empty.
+ */
+class CsvExporter extends TextExporter {
+
+  static final String HEADER = "nr,name,price,alcohol,volume,product_group,type\r\n";
+
+  CsvExporter(WritableByteChannel channel) {
+    super(channel);
+  }
+
+  @Override
+  void begin() throws IOException {
+    write(HEADER);
+  }
+
+  @Override
+  void formatRow(StringBuilder row) {
+    row.append(nr).append(',');
+    appendField(row, name);
+    row.append(',');
+    appendNumber(row, price, "");
+    row.append(',');
+    appendNumber(row, alcohol, "");
+    row.append(',').append(volume).append(',');
+    appendField(row, productGroup);
+    row.append(',');
+    appendField(row, type);
+    row.append("\r\n");
+  }
+
+  private static void appendField(StringBuilder row, String value) {
+    if (value == null) {
+      return;
+    }
+    if (!needsQuotes(value)) {
+      row.append(value);
+      return;
+    }
+    row.append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '"') {
+        row.append('"');
+      }
+      row.append(c);
+    }
+    row.append('"');
+  }
+
+  private static boolean needsQuotes(String value) {
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+        return true;
+      }
+    }
+    return false;
+  }
+}
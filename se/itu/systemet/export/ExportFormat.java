@@ -0,0 +1,114 @@
+package se.itu.systemet.export;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Locale;
+
+import se.itu.systemet.domain.Product;
+
+/**
+ * <p>The formats Products can be exported in, each with a
+ * ChannelExporter writing it.</p>
+ *
+ * <p>SQL is written as INSERT statements into the table "products",
+ * of up to {@link #SQL_BATCH_SIZE} rows each, unless the system
+ * properties systemet.export.sql.table and systemet.export.sql.batch
+ * say otherwise.</p>
+ */
+public enum ExportFormat {
+  CSV("csv", "CSV (comma separated values)"),
+  JSON_LINES("jsonl", "JSON Lines (one JSON object per line)"),
+  SQL("sql", "SQL INSERT statements"),
+  COLUMNAR("sysb", "Binary columns (catalog snapshot)");
+
+  /**
+   * The number of rows per SQL INSERT statement, unless the system
+   * property systemet.export.sql.batch says otherwise.
+   */
+  public static final int SQL_BATCH_SIZE = 1000;
+
+  private final String extension;
+  private final String description;
+
+  ExportFormat(String extension, String description) {
+    this.extension = extension;
+    this.description = description;
+  }
+
+  /**
+   * Returns the file name extension of this format, without the dot.
+   * @return The extension, e.g. "csv"
+   */
+  public String extension() {
+    return extension;
+  }
+
+  /**
+   * Returns a short description of this format, e.g. for a file chooser.
+   * @return A short description of this format
+   */
+  public String description() {
+    return description;
+  }
+
+  /**
+   * Returns the format a file name has the extension of.
+   * @param fileName The name of a file
+   * @return The format with the extension of fileName, or null
+   */
+  public static ExportFormat of(String fileName) {
+    for (ExportFormat format : values()) {
+      if (fileName.toLowerCase(Locale.ROOT).endsWith("." + format.extension)) {
+        return format;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns a ChannelExporter writing this format to a channel.
+   * @param channel The channel to write to, which is closed when the
+   * ChannelExporter is closed
+   * @return A new ChannelExporter for this format
+   */
+  public ChannelExporter open(WritableByteChannel channel) {
+    switch (this) {
+    case CSV:
+      return new CsvExporter(channel);
+    case JSON_LINES:
+      return new JsonLinesExporter(channel);
+    case SQL:
+      return new SqlExporter(channel, System.getProperty("systemet.export.sql.table", "products"),
+                             Integer.getInteger("systemet.export.sql.batch", SQL_BATCH_SIZE));
+    default:
+      return new ColumnarExporter(channel);
+    }
+  }
+
+  /**
+   * Writes Products to a file in this format, replacing the file if it exists.
+   * @param products The Products to write, in order
+   * @param file The file to write
+   * @return The number of Products written
+   * @throws IOException if the file can't be written
+   */
+  public int export(List<Product> products, Path file) throws IOException {
+    FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                                           StandardOpenOption.TRUNCATE_EXISTING);
+    ChannelExporter exporter;
+    try {
+      exporter = open(channel);
+    } catch (RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+    try (exporter) {
+      exporter.exportAll(products);
+      return exporter.rows();
+    }
+  }
+}
@@ -0,0 +1,67 @@
+package se.itu.systemet.export;
+
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Writes Products as JSON Lines: one JSON object per line, with the
+ * same keys as the REST API. Missing values, and numbers JSON can't
+ * represent (NaN), are null.
+ */
+class JsonLinesExporter extends TextExporter {
+
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  JsonLinesExporter(WritableByteChannel channel) {
+    super(channel);
+  }
+
+  @Override
+  void formatRow(StringBuilder row) {
+    row.append("{\"nr\":").append(nr).append(",\"name\":");
+    appendString(row, name);
+    row.append(",\"price\":");
+    appendNumber(row, price, "null");
+    row.append(",\"alcohol\":");
+    appendNumber(row, alcohol, "null");
+    row.append(",\"volume\":").append(volume).append(",\"product_group\":");
+    appendString(row, productGroup);
+    row.append(",\"type\":");
+    appendString(row, type);
+    row.append("}\n");
+  }
+
+  private static void appendString(StringBuilder row, String value) {
+    if (value == null) {
+      row.append("null");
+      return;
+    }
+    row.append('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      switch (c) {
+      case '"':
+        row.append("\\\"");
+        break;
+      case '\\':
+        row.append("\\\\");
+        break;
+      case '\n':
+        row.append("\\n");
+        break;
+      case '\r':
+        row.append("\\r");
+        break;
+      case '\t':
+        row.append("\\t");
+        break;
+      default:
+        if (c < 0x20) {
+          row.append("\\u00").append(HEX[c >> 4]).append(HEX[c & 0xf]);
+        } else {
+          row.append(c);
+        }
+      }
+    }
+    row.append('"');
+  }
+}
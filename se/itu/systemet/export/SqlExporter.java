@@ -0,0 +1,69 @@
+package se.itu.systemet.export;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Writes Products as SQL: INSERT statements of up to batchSize rows
+ * each, into a table with the columns nr, name, price, alcohol,
+ * volume, product_group and type. Missing values are NULL.
+ */
+class SqlExporter extends TextExporter {
+
+  private String insert;
+  private int batchSize;
+  private int inBatch; // the rows in the current INSERT so far, which the next row or end() ends
+
+  SqlExporter(WritableByteChannel channel, String table, int batchSize) {
+    super(channel);
+    if (batchSize < 1) {
+      throw new IllegalArgumentException("Batch size " + batchSize);
+    }
+    this.insert = "INSERT INTO " + table + " (nr, name, price, alcohol, volume, product_group, type) VALUES\n";
+    this.batchSize = batchSize;
+  }
+
+  @Override
+  void formatRow(StringBuilder row) {
+    if (inBatch == batchSize) {
+      row.append(";\n");
+      inBatch = 0;
+    }
+    row.append(inBatch == 0 ? insert : ",\n");
+    row.append('(').append(nr).append(", ");
+    appendString(row, name);
+    row.append(", ");
+    appendNumber(row, price, "NULL");
+    row.append(", ");
+    appendNumber(row, alcohol, "NULL");
+    row.append(", ").append(volume).append(", ");
+    appendString(row, productGroup);
+    row.append(", ");
+    appendString(row, type);
+    row.append(')');
+    inBatch++;
+  }
+
+  @Override
+  void end() throws IOException {
+    if (inBatch > 0) {
+      write(";\n");
+    }
+  }
+
+  private static void appendString(StringBuilder row, String value) {
+    if (value == null) {
+      row.append("NULL");
+      return;
+    }
+    row.append('\'');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '\'') {
+        row.append('\'');
+      }
+      row.append(c);
+    }
+    row.append('\'');
+  }
+}
@@ -0,0 +1,73 @@
+package se.itu.systemet.export;
+
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A ChannelExporter for text formats: each row is formatted into one
+ * StringBuilder, which is reused for every row, and encoded as UTF-8
+ * straight into the buffer through a char[] which is also reused.
+ */
+abstract class TextExporter extends ChannelExporter {
+
+  private StringBuilder text = new StringBuilder(256);
+  private char[] chars = new char[256];
+  private CharBuffer charBuffer = CharBuffer.wrap(chars);
+  private CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+    .onMalformedInput(CodingErrorAction.REPLACE)
+    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+  TextExporter(WritableByteChannel channel) {
+    super(channel);
+  }
+
+  @Override
+  final void writeRow() throws IOException {
+    text.setLength(0);
+    formatRow(text);
+    write(text);
+  }
+
+  /**
+   * Appends the fields of the Product just exported to row, as text.
+   * @param row The empty StringBuilder to append the row to
+   */
+  abstract void formatRow(StringBuilder row);
+
+  /* Encodes text into the buffer, writing out the buffer whenever it's full */
+  void write(StringBuilder text) throws IOException {
+    int length = text.length();
+    if (length > chars.length) {
+      chars = new char[Math.max(length, chars.length * 2)];
+      charBuffer = CharBuffer.wrap(chars);
+    }
+    text.getChars(0, length, chars, 0);
+    charBuffer.clear().limit(length);
+    encoder.reset();
+    while (encoder.encode(charBuffer, buffer(), true).isOverflow()) {
+      flush();
+    }
+    while (encoder.flush(buffer()).isOverflow()) {
+      flush();
+    }
+  }
+
+  void write(String text) throws IOException {
+    this.text.setLength(0);
+    this.text.append(text);
+    write(this.text);
+  }
+
+  /* Appends a double, or else if it is NaN or infinite */
+  static void appendNumber(StringBuilder row, double value, String orElse) {
+    if (Double.isFinite(value)) {
+      row.append(value);
+    } else {
+      row.append(orElse);
+    }
+  }
+}
@@ -0,0 +1,99 @@
+package se.itu.systemet.gui;
+
+import java.awt.Component;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.swing.DefaultListCellRenderer;
+import javax.swing.DefaultListModel;
+import javax.swing.JList;
+import javax.swing.ListSelectionModel;
+
+/**
+ * <p>A list of the values of a facet - e.g. all product groups - with
+ * the number of Products for each value, where the user selects the
+ * values to filter on.</p>
+ *
+ * <p>The counts are replaced after each search, without changing the
+ * selection and without notifying the selection listener. A selected
+ * value which no longer has any Products stays in the list, with the
+ * count 0, so that the user can still see it and clear it.</p>
+ */
+public class FacetList extends JList<String> {
+
+  private static final long serialVersionUID = 1L;
+
+  private DefaultListModel<String> values = new DefaultListModel<>();
+  private Map<String, Integer> counts = new HashMap<>();
+  private boolean updating;
+
+  /**
+   * Creates a new, empty FacetList.
+   * @param selectionChanged Run on the EDT when the user changes the selection
+   */
+  public FacetList(Runnable selectionChanged) {
+    setModel(values);
+    setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
+    setCellRenderer(new DefaultListCellRenderer() {
+        @Override
+        public Component getListCellRendererComponent(JList<?> list, Object value, int index,
+                                                      boolean isSelected, boolean cellHasFocus) {
+          Integer count = counts.get(value);
+          String text = count == null ? String.valueOf(value) : value + " (" + count + ")";
+          return super.getListCellRendererComponent(list, text, index, isSelected, cellHasFocus);
+        }
+      });
+    addListSelectionListener(e -> {
+        if (!e.getValueIsAdjusting() && !updating) {
+          selectionChanged.run();
+        }
+      });
+  }
+
+  /**
+   * Shows new counts. The values are those of the map, in its order,
+   * followed by the selected values which aren't in the map, and the
+   * values which were selected before stay selected.
+   * @param counts The number of Products per value
+   */
+  public void setCounts(Map<String, Integer> counts) {
+    List<String> selected = getSelectedValuesList();
+    updating = true;
+    try {
+      this.counts = new HashMap<>(counts);
+      List<String> newValues = new ArrayList<>(counts.keySet());
+      for (String value : selected) {
+        if (!counts.containsKey(value)) {
+          newValues.add(value);
+          this.counts.put(value, 0);
+        }
+      }
+      if (!newValues.equals(currentValues())) {
+        values.clear();
+        values.addAll(newValues);
+        for (String value : selected) {
+          int index = values.indexOf(value);
+          if (index >= 0) {
+            addSelectionInterval(index, index);
+          }
+        }
+      } else {
+        // Same values, new counts - the cells must be measured again
+        for (int i = 0; i < values.size(); i++) {
+          values.set(i, values.get(i));
+        }
+      }
+    } finally {
+      updating = false;
+    }
+  }
+
+  private List<String> currentValues() {
+    List<String> current = new ArrayList<>(values.size());
+    for (int i = 0; i < values.size(); i++) {
+      current.add(values.get(i));
+    }
+    return current;
+  }
+}
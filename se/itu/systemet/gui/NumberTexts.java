@@ -0,0 +1,95 @@
+package se.itu.systemet.gui;
+
+import java.text.DecimalFormatSymbols;
+import java.util.Arrays;
+
+/**
+ * <p>Formats numbers with a fixed number of decimals for the cells of
+ * a table, and remembers the Strings.</p>
+ *
+ * <p>The same values come back on every repaint, and most columns have
+ * few distinct values (prices like 99.00, volumes like 700), so the
+ * text of a value is kept in a small table, indexed by the rounded
+ * value. A hit costs no formatting and no allocation; a miss formats
+ * the digits straight into a char array, without NumberFormat.</p>
+ *
+ * <p>Not thread safe - meant to be used on the Event Dispatch Thread.</p>
+ */
+class NumberTexts {
+
+  private static final int SIZE = 4096; // a power of two
+  private static final long[] POWERS_OF_TEN = { 1, 10, 100, 1000, 10000, 100000, 1000000 };
+  private static final long NO_KEY = Long.MIN_VALUE;
+
+  private int decimals;
+  private char decimalSeparator;
+  private long[] keys = new long[SIZE];
+  private String[] texts = new String[SIZE];
+  private char[] digits = new char[24];
+
+  /**
+   * Creates a new NumberTexts using the decimal separator of the
+   * default locale.
+   * @param decimals The number of decimals to show, at most 6
+   */
+  NumberTexts(int decimals) {
+    this(decimals, DecimalFormatSymbols.getInstance().getDecimalSeparator());
+  }
+
+  /**
+   * Creates a new NumberTexts.
+   * @param decimals The number of decimals to show, at most 6
+   * @param decimalSeparator The character before the decimals
+   */
+  NumberTexts(int decimals, char decimalSeparator) {
+    if (decimals < 0 || decimals >= POWERS_OF_TEN.length) {
+      throw new IllegalArgumentException("Can't show " + decimals + " decimals");
+    }
+    this.decimals = decimals;
+    this.decimalSeparator = decimalSeparator;
+    Arrays.fill(keys, NO_KEY);
+  }
+
+  /**
+   * Returns the text of a value, rounded to the number of decimals.
+   * @param value The value to format
+   * @return The value as text, e.g. "37,5" for 37.5 with one decimal
+   * and a Swedish locale
+   */
+  String text(double value) {
+    double scaled = value * POWERS_OF_TEN[decimals];
+    if (!(Math.abs(scaled) < 1e15)) { // NaN, infinite or too large to be exact as a long
+      return Double.toString(value);
+    }
+    long key = Math.round(scaled);
+    int index = (int)(key ^ (key >>> 32)) * 0x9E3779B9 >>> 20; // the top 12 bits
+    if (keys[index] == key) {
+      return texts[index];
+    }
+    String text = format(key);
+    keys[index] = key;
+    texts[index] = text;
+    return text;
+  }
+
+  /* Formats a value scaled by 10^decimals */
+  private String format(long scaled) {
+    long rest = Math.abs(scaled);
+    int position = digits.length;
+    for (int i = 0; i < decimals; i++) {
+      digits[--position] = (char)('0' + rest % 10);
+      rest /= 10;
+    }
+    if (decimals > 0) {
+      digits[--position] = decimalSeparator;
+    }
+    do {
+      digits[--position] = (char)('0' + rest % 10);
+      rest /= 10;
+    } while (rest > 0);
+    if (scaled < 0) {
+      digits[--position] = '-';
+    }
+    return new String(digits, position, digits.length - position);
+  }
+}
@@ -0,0 +1,350 @@
+package se.itu.systemet.gui;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import javax.swing.JTable;
+import javax.swing.RowSorter;
+import javax.swing.SortOrder;
+import javax.swing.event.RowSorterListener;
+
+import se.itu.systemet.domain.Product;
+import se.itu.systemet.util.ColumnScan;
+import se.itu.systemet.util.IndexSort;
+
+/**
+ * <p>A RowSorter for a ProductTableModel, which keeps one sorted
+ * permutation of the model rows per column.</p>
+ *
+ * <p>A column's permutation is built (with primitive keys, no boxing)
+ * the first time the table is sorted on it, and is then kept. Sorting
+ * on that column again, in either direction, is O(1): descending order
+ * is the ascending permutation read backwards. When the model reports
+ * inserted, deleted or updated rows, every kept permutation is patched
+ * instead of being sorted again: the k changed rows are sorted, and
+ * each is put in place with a binary search, so only O(k log n) rows
+ * are compared - the rows in between are just moved, with room to
+ * grow kept at the end. So results arriving in batches cost in
+ * proportion to the batches, not to the rows so far. Only when all
+ * rows change are the permutations thrown away.</p>
+ *
+ * <p>The order before a change of the model is only passed on to
+ * RowSorterListeners other than a JTable - which ignores it during a
+ * model change, and keeps its selection itself - so with just a JTable
+ * listening, it isn't built at all.</p>
+ *
+ * <p>Only the first sort key is used. Rows with equal values are
+ * ordered by model row, so the sort is stable.</p>
+ */
+public class ProductRowSorter extends RowSorter<ProductTableModel> {
+
+  private ProductTableModel model;
+  private int[][] ascending; // ascending[column] is null until the table is sorted on it, may be longer than rowCount
+  private int sortColumn = -1; // -1 means unsorted
+  private boolean descending;
+  private int[] modelToView; // inverse of the current order, computed when needed
+  private int rowCount;
+  private List<RowSorterListener> others = new ArrayList<>(); // listeners besides a JTable
+
+  /**
+   * Creates a new ProductRowSorter for a model.
+   * @param model The model whose rows to sort
+   */
+  public ProductRowSorter(ProductTableModel model) {
+    this.model = model;
+    this.ascending = new int[model.getColumnCount()][];
+    this.rowCount = model.getRowCount();
+  }
+
+  @Override
+  public ProductTableModel getModel() {
+    return model;
+  }
+
+  @Override
+  public void addRowSorterListener(RowSorterListener listener) {
+    super.addRowSorterListener(listener);
+    if (listener != null && !(listener instanceof JTable)) {
+      others.add(listener);
+    }
+  }
+
+  @Override
+  public void removeRowSorterListener(RowSorterListener listener) {
+    super.removeRowSorterListener(listener);
+    others.remove(listener);
+  }
+
+  @Override
+  public void toggleSortOrder(int column) {
+    if (column == sortColumn) {
+      sort(column, !descending);
+    } else {
+      sort(column, false);
+    }
+  }
+
+  @Override
+  public void setSortKeys(List<? extends SortKey> keys) {
+    if (keys == null || keys.isEmpty() || keys.get(0).getSortOrder() == SortOrder.UNSORTED) {
+      sort(-1, false);
+    } else {
+      sort(keys.get(0).getColumn(), keys.get(0).getSortOrder() == SortOrder.DESCENDING);
+    }
+  }
+
+  @Override
+  public List<? extends SortKey> getSortKeys() {
+    if (sortColumn < 0) {
+      return Collections.emptyList();
+    }
+    return Collections.singletonList(new SortKey(sortColumn, descending ? SortOrder.DESCENDING
+                                                                      : SortOrder.ASCENDING));
+  }
+
+  private void sort(int column, boolean descending) {
+    if (column == sortColumn && descending == this.descending) {
+      return;
+    }
+    int[] lastViewToModel = viewToModel();
+    this.sortColumn = column;
+    this.descending = descending;
+    fireSortOrderChanged();
+    if (column >= 0 && ascending[column] == null) {
+      ascending[column] = sortedRows(column);
+    }
+    modelToView = null;
+    fireRowSorterChanged(lastViewToModel);
+  }
+
+  @Override
+  public int convertRowIndexToModel(int index) {
+    checkIndex(index);
+    if (sortColumn < 0) {
+      return index;
+    }
+    int[] order = ascending[sortColumn];
+    return descending ? order[rowCount - 1 - index] : order[index];
+  }
+
+  @Override
+  public int convertRowIndexToView(int index) {
+    checkIndex(index);
+    if (sortColumn < 0) {
+      return index;
+    }
+    if (modelToView == null) {
+      int[] order = ascending[sortColumn];
+      modelToView = new int[rowCount];
+      for (int i = 0; i < rowCount; i++) {
+        modelToView[order[i]] = i;
+      }
+    }
+    return descending ? rowCount - 1 - modelToView[index] : modelToView[index];
+  }
+
+  private void checkIndex(int index) {
+    if (index < 0 || index >= rowCount) {
+      throw new IndexOutOfBoundsException("Invalid row: " + index);
+    }
+  }
+
+  @Override
+  public int getViewRowCount() {
+    return rowCount;
+  }
+
+  @Override
+  public int getModelRowCount() {
+    return model.getRowCount();
+  }
+
+  @Override
+  public void modelStructureChanged() {
+    allRowsChanged();
+  }
+
+  @Override
+  public void allRowsChanged() {
+    int[] lastViewToModel = viewToModel();
+    ascending = new int[model.getColumnCount()][];
+    rowCount = model.getRowCount();
+    modelToView = null;
+    if (sortColumn >= 0) {
+      ascending[sortColumn] = sortedRows(sortColumn);
+      fireRowSorterChanged(lastViewToModel);
+    }
+  }
+
+  @Override
+  public void rowsInserted(int firstRow, int endRow) {
+    int[] lastViewToModel = previousViewToModel();
+    int size = rowCount;
+    int inserted = endRow - firstRow + 1;
+    rowCount += inserted;
+    for (int column = 0; column < ascending.length; column++) {
+      int[] order = ascending[column];
+      if (order == null) {
+        continue;
+      }
+      if (firstRow < size) { // not appended: the rows after them move down
+        for (int i = 0; i < size; i++) {
+          if (order[i] >= firstRow) {
+            order[i] += inserted;
+          }
+        }
+      }
+      ascending[column] = merge(column, order, size, sortedRange(column, firstRow, endRow));
+    }
+    changed(lastViewToModel);
+  }
+
+  @Override
+  public void rowsDeleted(int firstRow, int endRow) {
+    int[] lastViewToModel = previousViewToModel();
+    int size = rowCount;
+    int deleted = endRow - firstRow + 1;
+    rowCount -= deleted;
+    for (int column = 0; column < ascending.length; column++) {
+      int[] order = ascending[column];
+      if (order == null) {
+        continue;
+      }
+      int k = 0;
+      for (int i = 0; i < size; i++) {
+        int row = order[i];
+        if (row < firstRow) {
+          order[k++] = row;
+        } else if (row > endRow) {
+          order[k++] = row - deleted;
+        }
+      }
+    }
+    changed(lastViewToModel);
+  }
+
+  @Override
+  public void rowsUpdated(int firstRow, int endRow) {
+    int[] lastViewToModel = previousViewToModel();
+    for (int column = 0; column < ascending.length; column++) {
+      int[] order = ascending[column];
+      if (order == null) {
+        continue;
+      }
+      // Take the updated rows out, and merge them back in where they now belong
+      int k = 0;
+      for (int i = 0; i < rowCount; i++) {
+        int row = order[i];
+        if (row < firstRow || row > endRow) {
+          order[k++] = row;
+        }
+      }
+      ascending[column] = merge(column, order, k, sortedRange(column, firstRow, endRow));
+    }
+    changed(lastViewToModel);
+  }
+
+  @Override
+  public void rowsUpdated(int firstRow, int endRow, int column) {
+    rowsUpdated(firstRow, endRow);
+  }
+
+  private void changed(int[] lastViewToModel) {
+    modelToView = null;
+    if (sortColumn >= 0) {
+      fireRowSorterChanged(lastViewToModel);
+    }
+  }
+
+  /* The view to model mapping before a change of the model, or null if no listener but a JTable would use it */
+  private int[] previousViewToModel() {
+    return others.isEmpty() ? null : viewToModel();
+  }
+
+  /* The current view to model mapping, or null if unsorted */
+  private int[] viewToModel() {
+    if (sortColumn < 0) {
+      return null;
+    }
+    int[] viewToModel = new int[rowCount];
+    for (int i = 0; i < rowCount; i++) {
+      viewToModel[i] = convertRowIndexToModel(i);
+    }
+    return viewToModel;
+  }
+
+  /* All model rows, in ascending order of column */
+  private int[] sortedRows(int column) {
+    int size = model.getRowCount();
+    if (column == ProductTableModel.NAME_COLUMN) {
+      String[] keys = new String[size];
+      for (int i = 0; i < size; i++) {
+        keys[i] = model.productAt(i).nameKey();
+      }
+      return IndexSort.sortedIndexes(size, (i, j) -> {
+          int c = keys[i].compareTo(keys[j]);
+          return c != 0 ? c : Integer.compare(i, j);
+        });
+    }
+    // Computed on all cores for a big result, since "cl alc per SEK" is derived for every row
+    double[] keys = ColumnScan.compute(size, i -> model.doubleAt(i, column));
+    return IndexSort.sortedIndexes(size, (i, j) -> {
+        int c = Double.compare(keys[i], keys[j]);
+        return c != 0 ? c : Integer.compare(i, j);
+      });
+  }
+
+  /* The model rows firstRow to endRow, in ascending order of column */
+  private int[] sortedRange(int column, int firstRow, int endRow) {
+    int[] rows = new int[endRow - firstRow + 1];
+    for (int i = 0; i < rows.length; i++) {
+      rows[i] = firstRow + i;
+    }
+    IndexSort.sort(rows, 0, rows.length, (i, j) -> compare(column, i, j));
+    return rows;
+  }
+
+  /*
+   * Merges more, ascending model rows, into the first size of order,
+   * which are ascending too. From the last of more to the first, each
+   * is put in place with a binary search among the rows before the
+   * last one placed, and the rows after it are moved up once - to the
+   * end of order, which grows by half when it is full.
+   */
+  private int[] merge(int column, int[] order, int size, int[] more) {
+    int length = size + more.length;
+    int[] merged = length <= order.length ? order : Arrays.copyOf(order, Math.max(length, order.length + (order.length >> 1)));
+    int end = size; // merged[0..end) are rows of order not moved yet
+    for (int j = more.length - 1; j >= 0; j--) {
+      int row = more[j];
+      int low = 0;
+      int high = end;
+      while (low < high) {
+        int middle = (low + high) >>> 1;
+        if (compare(column, merged[middle], row) < 0) {
+          low = middle + 1;
+        } else {
+          high = middle;
+        }
+      }
+      // merged[low..end) come after row, and the j rows of more still to place before it
+      System.arraycopy(merged, low, merged, low + j + 1, end - low);
+      merged[low + j] = row;
+      end = low;
+    }
+    return merged;
+  }
+
+  private int compare(int column, int row1, int row2) {
+    int c;
+    if (column == ProductTableModel.NAME_COLUMN) {
+      Product p1 = model.productAt(row1);
+      Product p2 = model.productAt(row2);
+      c = Product.NAME_CASE_INSENSITIVE_ORDER.compare(p1, p2);
+    } else {
+      c = Double.compare(model.doubleAt(row1, column), model.doubleAt(row2, column));
+    }
+    return c != 0 ? c : Integer.compare(row1, row2);
+  }
+}
@@ -0,0 +1,70 @@
+package se.itu.systemet.gui;
+
+import java.awt.Component;
+import javax.swing.JTable;
+import javax.swing.SwingConstants;
+import javax.swing.table.DefaultTableCellRenderer;
+import javax.swing.table.TableCellRenderer;
+
+/**
+ * <p>A JTable for a ProductTableModel which stays smooth to scroll
+ * however many rows the result has.</p>
+ *
+ * <p>A JTable only paints the rows in its viewport, and the model and
+ * the ProductRowSorter answer for a row in O(1), so the cost of a
+ * repaint depends on the height of the viewport - not on the number of
+ * rows. What is left is the cost per cell: the default renderers box
+ * every number through getValueAt() and format it with a NumberFormat
+ * on every repaint. Here the numeric cells are read unboxed from the
+ * Product (ProductTableModel.doubleAt) and get their text from a
+ * NumberTexts, which remembers the Strings of the values it has
+ * formatted. All cells share one renderer per kind of column.</p>
+ */
+public class ProductTable extends JTable {
+
+  private static final long serialVersionUID = 1L;
+
+  private ProductTableModel model;
+  private NumberTexts[] numberTexts; // by model column, null for the name column
+
+  /**
+   * Creates a new ProductTable showing a model, sorted by a ProductRowSorter.
+   * @param model The model to show
+   */
+  public ProductTable(ProductTableModel model) {
+    super(model);
+    this.model = model;
+    numberTexts = new NumberTexts[model.getColumnCount()];
+    numberTexts[ProductTableModel.ALCOHOL_COLUMN] = new NumberTexts(1);
+    numberTexts[ProductTableModel.PRICE_COLUMN] = new NumberTexts(2);
+    numberTexts[ProductTableModel.VOLUME_COLUMN] = new NumberTexts(0);
+    numberTexts[ProductTableModel.CL_ALC_PER_SEK_COLUMN] = new NumberTexts(3);
+    DefaultTableCellRenderer numberRenderer = new DefaultTableCellRenderer();
+    numberRenderer.setHorizontalAlignment(SwingConstants.RIGHT);
+    setDefaultRenderer(Double.class, numberRenderer);
+    setDefaultRenderer(Integer.class, numberRenderer);
+    setFillsViewportHeight(true);
+    setRowHeight(30);
+    setRowSorter(new ProductRowSorter(model));
+    getColumnModel().getColumn(ProductTableModel.NAME_COLUMN).setPreferredWidth(400);
+  }
+
+  /**
+   * Prepares the renderer for a cell. Numeric cells get their text
+   * straight from the Product, without boxing or NumberFormat.
+   */
+  @Override
+  public Component prepareRenderer(TableCellRenderer renderer, int row, int column) {
+    int modelColumn = convertColumnIndexToModel(column);
+    NumberTexts texts = numberTexts[modelColumn];
+    if (texts == null) {
+      return super.prepareRenderer(renderer, row, column);
+    }
+    String text = texts.text(model.doubleAt(convertRowIndexToModel(row), modelColumn));
+    boolean isSelected = !isPaintingForPrint() && isCellSelected(row, column);
+    boolean hasFocus = !isPaintingForPrint() && isFocusOwner() &&
+      getSelectionModel().getLeadSelectionIndex() == row &&
+      getColumnModel().getSelectionModel().getLeadSelectionIndex() == column;
+    return renderer.getTableCellRendererComponent(this, text, isSelected, hasFocus, row, column);
+  }
+}
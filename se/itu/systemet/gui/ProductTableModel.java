@@ -1,64 +1,262 @@
 package se.itu.systemet.gui;
 
-import javax.swing.*;
-import javax.swing.event.*;
-import javax.swing.table.*;
-import java.awt.*;
-import java.awt.event.*;
-import javax.swing.table.*;
+import javax.swing.table.AbstractTableModel;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
 import se.itu.systemet.domain.Product;
+import se.itu.systemet.metrics.Metrics;
+import se.itu.systemet.metrics.Stage;
 
 /**
  * A class representing the contents of a table with products.
  * See: https://docs.oracle.com/javase/tutorial/uiswing/components/table.html
+ *
+ * The model is a view over the List of products - nothing is copied
+ * when it is created, and the derived "cl alc per SEK" column is only
+ * computed for the cells actually asked for (typically the visible ones).
+ *
+ * A table can keep one model for its whole life: setProducts(List)
+ * compares a new result with the current one, by product number,
+ * and only tells the table about the rows which were inserted,
+ * deleted or updated.
  */
 public class ProductTableModel extends AbstractTableModel {
-  private String[] columnNames = { "Name", "Alcohol", "Price", "Volume", "cl alc per SEK"};
-  private Object[][] data;
+  private static final long serialVersionUID = 1L;
+  public static final int NAME_COLUMN = 0;
+  public static final int ALCOHOL_COLUMN = 1;
+  public static final int PRICE_COLUMN = 2;
+  public static final int VOLUME_COLUMN = 3;
+  public static final int CL_ALC_PER_SEK_COLUMN = 4;
+
+  private static final String[] COLUMN_NAMES = { "Name", "Alcohol", "Price", "Volume", "cl alc per SEK"};
+  private static final Class<?>[] COLUMN_CLASSES = { String.class, Double.class, Double.class, Integer.class, Double.class };
+  // Above this many inserted/deleted/updated row runs, one "everything changed" is cheaper
+  private static final int MAX_RUNS = 64;
+  private List<Product> products;
+  private boolean ownsProducts; // true if products is our own copy, which we may change
   
   public ProductTableModel(List<Product> products) {
-    data = new Object[products.size()][5];
-    for (int i=0; i<products.size(); i++) {
-      Product product = products.get(i);
-      data[i][0] = product.name();
-      data[i][1] = product.alcohol();
-      data[i][2] = product.price();
-      data[i][3] = product.volume();
-      data[i][4] = product.alcohol()/100.0 * product.volume()/10 / product.price();
+    this.products = products;
+  }
+
+  /**
+   * Appends products to the end of this model, e.g. the next batch of
+   * a result which is still arriving.
+   * @param moreProducts The products to append
+   */
+  public void addProducts(List<Product> moreProducts) {
+    if (moreProducts.isEmpty()) {
+      return;
+    }
+    long start = Metrics.start();
+    if (!ownsProducts) {
+      products = new ArrayList<>(products);
+      ownsProducts = true;
+    }
+    int first = products.size();
+    products.addAll(moreProducts);
+    fireTableRowsInserted(first, products.size() - 1);
+    Metrics.record(Stage.TABLE_MODEL, start);
+  }
+
+  /**
+   * Replaces the products of this model, firing events only for the
+   * rows which differ, as decided by Product.nr().
+   *
+   * If the products kept from the current list are in a different
+   * order in the new list, or if the lists differ too much, a single
+   * fireTableDataChanged() is fired instead.
+   *
+   * @param newProducts The new products to show
+   */
+  public void setProducts(List<Product> newProducts) {
+    long start = Metrics.start();
+    update(newProducts);
+    Metrics.record(Stage.TABLE_MODEL, start);
+  }
+
+  private void update(List<Product> newProducts) {
+    List<Product> oldProducts = products;
+    if (newProducts == oldProducts) {
+      return;
+    }
+    if (oldProducts.isEmpty() || newProducts.isEmpty()) {
+      products = newProducts;
+      ownsProducts = false;
+      if (!oldProducts.isEmpty()) {
+        fireTableRowsDeleted(0, oldProducts.size() - 1);
+      } else if (!newProducts.isEmpty()) {
+        fireTableRowsInserted(0, newProducts.size() - 1);
+      }
+      return;
+    }
+    Map<Integer, Integer> newPositions = new HashMap<>(newProducts.size() * 2);
+    for (int i = 0; i < newProducts.size(); i++) {
+      if (newPositions.put(newProducts.get(i).nr(), i) != null) {
+        replaceAll(newProducts); // no usable identity to diff by
+        return;
+      }
+    }
+    // Every row we keep must keep its place relative to the other kept rows,
+    // and take a place of its own - old rows with the same nr can't both be kept
+    int[] oldToNew = new int[oldProducts.size()];
+    boolean[] keptInNew = new boolean[newProducts.size()];
+    int previous = -1;
+    for (int i = 0; i < oldProducts.size(); i++) {
+      Integer position = newPositions.get(oldProducts.get(i).nr());
+      oldToNew[i] = position == null ? -1 : position;
+      if (position != null) {
+        if (position <= previous) {
+          replaceAll(newProducts);
+          return;
+        }
+        previous = position;
+        keptInNew[position] = true;
+      }
+    }
+    if (runs(oldToNew) + runs(keptInNew) > MAX_RUNS) {
+      replaceAll(newProducts);
+      return;
+    }
+    List<Product> rows = new ArrayList<>(oldProducts);
+    products = rows;
+    ownsProducts = true;
+    // Delete from the end, so that the positions of earlier runs stay valid
+    int end = rows.size() - 1;
+    while (end >= 0) {
+      if (oldToNew[end] >= 0) {
+        end--;
+        continue;
+      }
+      int start = end;
+      while (start > 0 && oldToNew[start - 1] < 0) {
+        start--;
+      }
+      rows.subList(start, end + 1).clear();
+      fireTableRowsDeleted(start, end);
+      end = start - 1;
+    }
+    // Now rows holds the kept products, in the same order as in newProducts
+    int row = 0;
+    while (row < newProducts.size()) {
+      int start = row;
+      if (!keptInNew[row]) {
+        while (row < newProducts.size() && !keptInNew[row]) {
+          row++;
+        }
+        rows.addAll(start, newProducts.subList(start, row));
+        fireTableRowsInserted(start, row - 1);
+      } else if (!same(rows.get(row), newProducts.get(row))) {
+        while (row < newProducts.size() && keptInNew[row] && !same(rows.get(row), newProducts.get(row))) {
+          rows.set(row, newProducts.get(row));
+          row++;
+        }
+        fireTableRowsUpdated(start, row - 1);
+      } else {
+        row++;
+      }
     }
   }
 
+  /* Counts the runs of removed (negative) positions */
+  private static int runs(int[] oldToNew) {
+    int runs = 0;
+    for (int i = 0; i < oldToNew.length; i++) {
+      if (oldToNew[i] < 0 && (i == 0 || oldToNew[i - 1] >= 0)) {
+        runs++;
+      }
+    }
+    return runs;
+  }
+
+  /* Counts the runs of inserted (not kept) rows */
+  private static int runs(boolean[] keptInNew) {
+    int runs = 0;
+    for (int i = 0; i < keptInNew.length; i++) {
+      if (!keptInNew[i] && (i == 0 || keptInNew[i - 1])) {
+        runs++;
+      }
+    }
+    return runs;
+  }
+
+  private void replaceAll(List<Product> newProducts) {
+    products = newProducts;
+    ownsProducts = false;
+    fireTableDataChanged();
+  }
+
+  private static boolean same(Product a, Product b) {
+    return a == b || (a.equals(b) &&
+                      Objects.equals(a.productGroup(), b.productGroup()) &&
+                      Objects.equals(a.type(), b.type()));
+  }
+
+  /**
+   * Returns the centilitres of alcohol you get per SEK for a Product.
+   * @param product The Product to compute the value for
+   * @return The centilitres of alcohol per SEK for the Product
+   */
+  public static double clAlcPerSek(Product product) {
+    return product.alcohol()/100.0 * product.volume()/10 / product.price();
+  }
+
   public int getColumnCount() {
-    return columnNames.length;
+    return COLUMN_NAMES.length;
   }
 
   public int getRowCount() {
-      return data.length;
+    return products.size();
   }
 
   public String getColumnName(int col) {
-    return columnNames[col];
+    return COLUMN_NAMES[col];
   }
 
   public Object getValueAt(int row, int col) {
-    if(data.length!=0) {
-      return data[row][col];
-    } else {
-      return "";
+    Product product = products.get(row);
+    switch (col) {
+      case NAME_COLUMN: return product.name();
+      case ALCOHOL_COLUMN: return product.alcohol();
+      case PRICE_COLUMN: return product.price();
+      case VOLUME_COLUMN: return product.volume();
+      case CL_ALC_PER_SEK_COLUMN: return clAlcPerSek(product);
+      default: throw new IndexOutOfBoundsException("No such column: " + col);
     }
   }
 
-  public Class getColumnClass(int c) {
-    return getValueAt(0, c).getClass();
+  public Class<?> getColumnClass(int c) {
+    return COLUMN_CLASSES[c];
   }
 
-  /*
-  public void setValueAt(Object value, int row, int col) {
-    data[row][col] = value;
-    fireTableCellUpdated(row, col);
+  /**
+   * Returns the Product shown in a row.
+   * @param row The (model) row of the Product
+   * @return The Product shown in the row
+   */
+  public Product productAt(int row) {
+    return products.get(row);
+  }
+
+  /**
+   * Returns the value of a numeric column as a double, without boxing.
+   * @param row The (model) row of the value
+   * @param col One of the numeric columns
+   * @return The value in the cell as a double
+   */
+  public double doubleAt(int row, int col) {
+    Product product = products.get(row);
+    switch (col) {
+      case ALCOHOL_COLUMN: return product.alcohol();
+      case PRICE_COLUMN: return product.price();
+      case VOLUME_COLUMN: return product.volume();
+      case CL_ALC_PER_SEK_COLUMN: return clAlcPerSek(product);
+      default: throw new IllegalArgumentException("Not a numeric column: " + col);
+    }
   }
-  */
 }
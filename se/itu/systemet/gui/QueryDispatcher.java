@@ -0,0 +1,171 @@
+package se.itu.systemet.gui;
+
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import javax.swing.Timer;
+
+import se.itu.systemet.metrics.Counter;
+import se.itu.systemet.metrics.Metrics;
+import se.itu.systemet.metrics.Stage;
+import se.itu.systemet.rest.Query;
+
+/**
+ * <p>Sits between the input fields of a GUI and whoever fetches products,
+ * and makes sure a burst of edits results in a single request.</p>
+ *
+ * <p>Every call to {@link #eventReceived()} (re)starts a timer. When the
+ * timer finally fires - that is, when the user has paused typing for the
+ * configured delay - the current Query is built. If its query string is
+ * the same as the one last dispatched, nothing happens; otherwise the
+ * Query is handed over to the consumer. The supplier returns null when
+ * the input can't be used, and then nothing is dispatched either.</p>
+ *
+ * <p>When metrics are on, the wait from the last edit to the dispatch
+ * and the building of the Query are recorded as the INPUT and
+ * QUERY_BUILD stages.</p>
+ *
+ * <p>All methods are meant to be called on the Event Dispatch Thread.</p>
+ */
+public class QueryDispatcher {
+
+  /**
+   * The delay used unless the system property systemet.debounce.millis
+   * says otherwise.
+   */
+  public static final int DEFAULT_DELAY_MILLIS = 250;
+
+  private Timer timer;
+  private Supplier<Query> querySupplier;
+  private Consumer<Query> queryConsumer;
+  private String lastQueryString;
+  private long eventsReceived;
+  private long requestsIssued;
+  private long duplicatesSkipped;
+  private long invalidSkipped;
+  private long lastEventNanos; // 0 if metrics are off, or after dispatchNow()
+  private long inputNanos;
+
+  /**
+   * Creates a new QueryDispatcher.
+   * @param delayMillis How long (in milliseconds) the input must be quiet
+   * before a Query is dispatched
+   * @param querySupplier Builds a Query from the current input, or
+   * returns null if the input can't be used
+   * @param queryConsumer Receives the Queries which are actually dispatched
+   */
+  public QueryDispatcher(int delayMillis, Supplier<Query> querySupplier, Consumer<Query> queryConsumer) {
+    this.querySupplier = querySupplier;
+    this.queryConsumer = queryConsumer;
+    timer = new Timer(delayMillis, e -> dispatch());
+    timer.setRepeats(false);
+  }
+
+  /**
+   * Creates a new QueryDispatcher with the delay from the system property
+   * systemet.debounce.millis, or {@link #DEFAULT_DELAY_MILLIS}.
+   * @param querySupplier Builds a Query from the current input
+   * @param queryConsumer Receives the Queries which are actually dispatched
+   */
+  public QueryDispatcher(Supplier<Query> querySupplier, Consumer<Query> queryConsumer) {
+    this(Integer.getInteger("systemet.debounce.millis", DEFAULT_DELAY_MILLIS),
+         querySupplier, queryConsumer);
+  }
+
+  /**
+   * Tells this QueryDispatcher that the input has changed.
+   */
+  public void eventReceived() {
+    eventsReceived++;
+    lastEventNanos = Metrics.start();
+    timer.restart();
+  }
+
+  /**
+   * Dispatches the current Query right away, without waiting for the
+   * delay and even if it is the same as the last one.
+   */
+  public void dispatchNow() {
+    timer.stop();
+    lastQueryString = null;
+    lastEventNanos = 0;
+    dispatch();
+  }
+
+  private void dispatch() {
+    long start = Metrics.start();
+    Query query = querySupplier.get();
+    if (query == null) {
+      invalidSkipped++;
+      return;
+    }
+    String queryString = query.toQueryString();
+    Metrics.record(Stage.QUERY_BUILD, start);
+    if (queryString.equals(lastQueryString)) {
+      duplicatesSkipped++;
+      return;
+    }
+    lastQueryString = queryString;
+    requestsIssued++;
+    Metrics.record(Stage.INPUT, lastEventNanos);
+    Metrics.count(Counter.QUERIES);
+    inputNanos = lastEventNanos != 0 ? lastEventNanos : start;
+    queryConsumer.accept(query);
+  }
+
+  /**
+   * Returns when the input behind the latest dispatched Query was
+   * received - the last input event, or the dispatch itself if it
+   * wasn't caused by input - for measuring the time until its result
+   * is shown.
+   * @return A System.nanoTime(), or 0 if metrics are off
+   */
+  public long inputNanos() {
+    return inputNanos;
+  }
+
+  /**
+   * Returns the number of input events received so far.
+   * @return The number of input events received so far
+   */
+  public long eventsReceived() {
+    return eventsReceived;
+  }
+
+  /**
+   * Returns the number of Queries actually dispatched so far.
+   * @return The number of Queries actually dispatched so far
+   */
+  public long requestsIssued() {
+    return requestsIssued;
+  }
+
+  /**
+   * Returns the number of Queries skipped because they were the
+   * same as the previously dispatched one.
+   * @return The number of skipped duplicate Queries
+   */
+  public long duplicatesSkipped() {
+    return duplicatesSkipped;
+  }
+
+  /**
+   * Returns the number of times nothing was dispatched because the
+   * input couldn't be used.
+   * @return The number of skipped invalid inputs
+   */
+  public long invalidSkipped() {
+    return invalidSkipped;
+  }
+
+  /**
+   * Returns the counters of this QueryDispatcher as a String.
+   * @return The counters of this QueryDispatcher as a String
+   */
+  @Override
+  public String toString() {
+    return "events received: " + eventsReceived +
+      ", requests issued: " + requestsIssued +
+      ", duplicates skipped: " + duplicatesSkipped +
+      ", invalid skipped: " + invalidSkipped;
+  }
+}
@@ -2,31 +2,52 @@ package se.itu.systemet.gui;
 
 import java.awt.*;
 import java.awt.event.*;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Stream;
 import javax.swing.*;
 import javax.swing.event.*;
+import javax.swing.filechooser.FileNameExtensionFilter;
 import javax.swing.table.*;
 
 import se.itu.systemet.domain.Product;
+import se.itu.systemet.export.ExportFormat;
+import se.itu.systemet.metrics.Counter;
+import se.itu.systemet.metrics.Metrics;
+import se.itu.systemet.metrics.Stage;
 import se.itu.systemet.rest.ApiAccess;
 import se.itu.systemet.rest.ApiAccessFactory;
-import se.itu.systemet.rest.Param;
+import se.itu.systemet.rest.CatalogApiAccess;
+import se.itu.systemet.rest.FacetCounts;
+import se.itu.systemet.rest.InvalidQueryException;
+import se.itu.systemet.rest.ProductQuery;
 import se.itu.systemet.rest.Query;
-import se.itu.systemet.rest.QueryFactory;
 
 /**
  * A class representing the GUI for an application for
  * searching Systembolaget products.
  */
 public class SearchGUI {
+  private static final Color INVALID_BACKGROUND = new Color(255, 210, 210);
+
   // Instance variables below - mostly Swing components for the UI  
   private JFrame frame; // this is the actual window
   private JPanel panel; // a panel is a surface to put other components on
   private JPanel form;  
-  private JTable table; // A table which looks like a spread sheet, kind of
+  private ProductTable table; // A table which looks like a spread sheet, kind of
+  private ProductTableModel model; // The one model of the table, updated for each result
   // input fields for searching
+  private JTextField nameField;
+  private FacetList productGroupList;
+  private FacetList typeList;
   private JTextField minAlcoField; 
   private JTextField maxAlcoField; 
   private JTextField minPriceField;
@@ -34,12 +55,29 @@ public class SearchGUI {
 
   private List<Product> products;
   private ApiAccess api; // For talking to the REST API
-  
+  private FetchWorker worker; // The latest fetch, the only one allowed to update the table
+  private QueryDispatcher dispatcher; // Collapses bursts of edits into one fetch
+
   public SearchGUI() {
     api = ApiAccessFactory.getApiAccess();    
-    products = api.fetch(QueryFactory.getQuery());
+    products = new ArrayList<>();
+    dispatcher = new QueryDispatcher(this::query, this::newFilter);
+    if (api instanceof CatalogApiAccess) {
+      // When the catalog has been refreshed or synced, show the changes to the result
+      ((CatalogApiAccess)api).addRefreshListener(() -> SwingUtilities.invokeLater(this::refresh));
+    }
     init(); // Initiate the components
     show(); // Show the frame
+    dispatcher.dispatchNow(); // Fetch all products in the background
+  }
+
+  /**
+   * Returns the QueryDispatcher of this GUI, e.g. for checking how
+   * many input events it received compared to the requests it issued.
+   * @return The QueryDispatcher of this GUI
+   */
+  public QueryDispatcher dispatcher() {
+    return dispatcher;
   }
 
   private void init() {
@@ -51,12 +89,9 @@ public class SearchGUI {
     form = new JPanel(formLayout);
     formLayout.setVgap(2);
     formLayout.setHgap(4);
-    table = new JTable(new ProductTableModel(products));
+    model = new ProductTableModel(products);
+    table = new ProductTable(model);
     table.setPreferredScrollableViewportSize(new Dimension(1600, 1600));
-    table.setFillsViewportHeight(true);
-    table.setRowHeight(30);
-    table.setAutoCreateRowSorter(true);
-    table.getColumnModel().getColumn(0).setPreferredWidth(400);
     JScrollPane scrollPane = new JScrollPane(table);
     panel.add(scrollPane);
     panel.setOpaque(true);
@@ -74,16 +109,122 @@ public class SearchGUI {
     form.add(new JLabel("Maximum price:"));
     form.add(maxPriceField);
     frame.add(form, BorderLayout.SOUTH);
+    nameField = new JTextField(30);
+    nameField.setToolTipText("Part of the name, or the start of it followed by *");
+    JPanel search = new JPanel(new BorderLayout(4, 0));
+    search.add(new JLabel("Name:"), BorderLayout.WEST);
+    search.add(nameField, BorderLayout.CENTER);
+    JPanel buttons = new JPanel(new GridLayout(1, 0, 4, 0));
+    if (api instanceof CatalogApiAccess) {
+      buttons.add(syncButton((CatalogApiAccess)api));
+    }
+    buttons.add(exportButton());
+    search.add(buttons, BorderLayout.EAST);
+    frame.add(search, BorderLayout.NORTH);
+    productGroupList = new FacetList(dispatcher::eventReceived);
+    typeList = new FacetList(dispatcher::eventReceived);
+    JPanel facets = new JPanel(new GridLayout(2, 1, 0, 4));
+    facets.add(facetPane("Product group", productGroupList));
+    facets.add(facetPane("Type", typeList));
+    frame.add(facets, BorderLayout.WEST);
     addListeners();
   }
 
+  /* A button fetching the changes to the catalog, in the background */
+  private JButton syncButton(CatalogApiAccess catalog) {
+    JButton button = new JButton("Refresh");
+    button.setToolTipText("Fetch the changes to the catalog");
+    button.addActionListener(e -> {
+        button.setEnabled(false);
+        new SwingWorker<Boolean, Void>() {
+          @Override
+          protected Boolean doInBackground() {
+            return catalog.sync(); // the refresh listener shows the changes
+          }
+
+          @Override
+          protected void done() {
+            button.setEnabled(true);
+            try {
+              get();
+            } catch (ExecutionException ex) {
+              System.err.println("Error refreshing the catalog: " + ex.getCause().getMessage());
+            } catch (InterruptedException | CancellationException ex) {
+              // Nothing to do
+            }
+          }
+        }.execute();
+      });
+    return button;
+  }
+
+  /* A button writing the result, as sorted in the table, to a file chosen by the user */
+  private JButton exportButton() {
+    JButton button = new JButton("Export results");
+    button.addActionListener(e -> {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setAcceptAllFileFilterUsed(false);
+        for (ExportFormat format : ExportFormat.values()) {
+          chooser.addChoosableFileFilter(new FileNameExtensionFilter(format.description(), format.extension()));
+        }
+        if (chooser.showSaveDialog(frame) != JFileChooser.APPROVE_OPTION) {
+          return;
+        }
+        String extension = ((FileNameExtensionFilter)chooser.getFileFilter()).getExtensions()[0];
+        Path file = chooser.getSelectedFile().toPath();
+        ExportFormat format = ExportFormat.of(file.toString());
+        if (format == null) {
+          format = ExportFormat.of("." + extension);
+          file = file.resolveSibling(file.getFileName() + "." + extension);
+        }
+        // The rows in the order shown, taken on the EDT and written in the background
+        List<Product> rows = new ArrayList<>(table.getRowCount());
+        for (int row = 0; row < table.getRowCount(); row++) {
+          rows.add(model.productAt(table.convertRowIndexToModel(row)));
+        }
+        button.setEnabled(false);
+        export(rows, format, file, button);
+      });
+    return button;
+  }
+
+  private void export(List<Product> rows, ExportFormat format, Path file, JButton button) {
+    new SwingWorker<Integer, Void>() {
+      @Override
+      protected Integer doInBackground() throws IOException {
+        return format.export(rows, file);
+      }
+
+      @Override
+      protected void done() {
+        button.setEnabled(true);
+        try {
+          get();
+        } catch (ExecutionException e) {
+          System.err.println("Error exporting to " + file + ": " + e.getCause().getMessage());
+          JOptionPane.showMessageDialog(frame, "Could not export to " + file + ":\n" + e.getCause().getMessage(),
+                                        "Export results", JOptionPane.ERROR_MESSAGE);
+        } catch (InterruptedException | CancellationException e) {
+          // Nothing to do
+        }
+      }
+    }.execute();
+  }
+
+  private JComponent facetPane(String title, FacetList list) {
+    JScrollPane pane = new JScrollPane(list);
+    pane.setBorder(BorderFactory.createTitledBorder(title));
+    pane.setPreferredSize(new Dimension(260, 200));
+    return pane;
+  }
+
   private void show() {
     frame.pack();
     frame.setVisible(true);
   }
 
   private List<JTextField> textFields() {
-    List<JTextField> textFields = Arrays.asList(minPriceField, maxPriceField, minAlcoField, maxAlcoField);
+    List<JTextField> textFields = Arrays.asList(nameField, minPriceField, maxPriceField, minAlcoField, maxAlcoField);
     return textFields;
   }
 
@@ -92,40 +233,179 @@ public class SearchGUI {
       textField.getDocument()
         .addDocumentListener(new DocumentListener() {
             public void changedUpdate(DocumentEvent e) {
-              newFilter();
+              dispatcher.eventReceived();
             }
             public void insertUpdate(DocumentEvent e) {
-              newFilter();
+              dispatcher.eventReceived();
             }
             public void removeUpdate(DocumentEvent e) {
-              newFilter();
+              dispatcher.eventReceived();
             }
           });          
     }
   }
 
-  private List<Param> params() {
-    List<Param> params = new ArrayList<>();
-    if (!"".equals(minAlcoField.getText())) {
-      params.add(new Param("min_alcohol", minAlcoField.getText()));
+  /*
+   * The Query for the current input, or null if some input can't be
+   * used - then the fields with bad input are marked, and nothing is
+   * sent to the API.
+   */
+  private Query query() {
+    ProductQuery.Builder builder = new ProductQuery.Builder()
+      .name(nameField.getText())
+      .productGroups(productGroupList.isSelectionEmpty() ? null : productGroupList.getSelectedValuesList())
+      .types(typeList.isSelectionEmpty() ? null : typeList.getSelectedValuesList());
+    boolean valid = check(minAlcoField, () -> builder.minAlcohol(minAlcoField.getText()));
+    valid &= check(maxAlcoField, () -> builder.maxAlcohol(maxAlcoField.getText()));
+    valid &= check(minPriceField, () -> builder.minPrice(minPriceField.getText()));
+    valid &= check(maxPriceField, () -> builder.maxPrice(maxPriceField.getText()));
+    return valid ? builder.build().toQuery() : null;
+  }
+
+  /* Runs a builder method for the input of field, and marks field if the input is bad */
+  private boolean check(JTextField field, Runnable parse) {
+    try {
+      parse.run();
+      field.setBackground(UIManager.getColor("TextField.background"));
+      field.setToolTipText(null);
+      return true;
+    } catch (InvalidQueryException e) {
+      field.setBackground(INVALID_BACKGROUND);
+      field.setToolTipText(e.getMessage());
+      return false;
     }
-    if (!"".equals(maxAlcoField.getText())) {
-      params.add(new Param("max_alcohol", maxAlcoField.getText()));
+  }
+
+  /* Runs on the EDT: starts a new fetch and cancels the one it supersedes */
+  private void newFilter(Query query) {
+    if (worker != null) {
+      if (!worker.isDone()) {
+        Metrics.count(Counter.CANCELLATIONS);
+      }
+      worker.cancel(true);
     }
-    if (!"".equals(minPriceField.getText())) {
-      params.add(new Param("min_price", minPriceField.getText()));
+    worker = new FetchWorker(query, dispatcher.inputNanos(), true);
+    worker.execute();
+  }
+
+  /*
+   * Runs on the EDT: fetches the result of the current input again,
+   * after the catalog has changed. The result is shown all at once, so
+   * that only the rows which changed are updated.
+   */
+  private void refresh() {
+    Query query = query();
+    if (query == null) {
+      return;
     }
-    if (!"".equals(maxPriceField.getText())) {
-      params.add(new Param("max_price", maxPriceField.getText()));
+    if (worker != null) {
+      worker.cancel(true);
     }
-    return params;
+    worker = new FetchWorker(query, 0, false);
+    worker.execute();
+  }
+
+  private void showProducts(List<Product> products) {
+    this.products = products;
+    model.setProducts(products);
+  }
+
+  private void showFacetCounts(FacetCounts counts) {
+    productGroupList.setCounts(counts.productGroups());
+    typeList.setCounts(counts.types());
   }
-  
-  private void newFilter() {
-    Query query = QueryFactory.getQuery();
-    for (Param param : params() ) {
-      query.addParam(param);
+
+  /**
+   * Fetches products for a Query off the Event Dispatch Thread.
+   * Only the latest worker gets to update the table, so a slow
+   * response to an old Query can never overwrite a newer result.
+   *
+   * Products are published as they arrive: the first batch replaces
+   * the rows of the previous result, later batches are appended, so
+   * the first rows are shown before the whole result has arrived.
+   * Unless they are not streamed: then the whole result replaces the
+   * rows at once, when done.
+   *
+   * When metrics are on, the worker records the FETCH, EDT_APPLY and
+   * END_TO_END stages.
+   */
+  private class FetchWorker extends SwingWorker<List<Product>, Product> {
+    private Query query;
+    private boolean firstBatchShown;
+    private boolean finished; // batches may still be delivered after done()
+    private FacetCounts counts; // null if they couldn't be counted
+    private long inputNanos; // for Metrics, 0 if they are off
+    private boolean streamed;
+
+    FetchWorker(Query query, long inputNanos, boolean streamed) {
+      this.query = query;
+      this.inputNanos = inputNanos;
+      this.streamed = streamed;
+    }
+
+    @Override
+    protected List<Product> doInBackground() {
+      // Counted at the same time as the Products arrive
+      CompletableFuture<FacetCounts> pendingCounts = api.facetCountsAsync(query);
+      long start = Metrics.start();
+      List<Product> result = new ArrayList<>();
+      try (Stream<Product> stream = api.stream(query)) {
+        Iterator<Product> iterator = stream.iterator();
+        while (!isCancelled() && iterator.hasNext()) {
+          Product product = iterator.next();
+          result.add(product);
+          if (streamed) {
+            publish(product);
+          }
+        }
+      }
+      if (!isCancelled()) {
+        Metrics.record(Stage.FETCH, start);
+        try {
+          counts = pendingCounts.join();
+        } catch (CompletionException e) {
+          System.err.println("Error counting products: " + e.getCause().getMessage());
+        }
+      }
+      return result;
+    }
+
+    @Override
+    protected void process(List<Product> batch) {
+      if (this != worker || isCancelled() || finished) {
+        return;
+      }
+      long start = Metrics.start();
+      if (firstBatchShown) {
+        model.addProducts(batch);
+      } else {
+        model.setProducts(new ArrayList<>(batch));
+        firstBatchShown = true;
+      }
+      Metrics.record(Stage.EDT_APPLY, start);
+    }
+
+    @Override
+    protected void done() {
+      finished = true;
+      if (this != worker || isCancelled()) {
+        return; // superseded by a newer query
+      }
+      long start = Metrics.start();
+      try {
+        showProducts(get());
+        if (counts != null) {
+          showFacetCounts(counts);
+        }
+        Metrics.record(Stage.EDT_APPLY, start);
+        Metrics.record(Stage.END_TO_END, inputNanos);
+      } catch (ExecutionException e) {
+        Metrics.count(Counter.FAILURES);
+        System.err.println("Error fetching products: " + e.getCause().getMessage());
+        showProducts(new ArrayList<>());
+      } catch (InterruptedException | CancellationException e) {
+        // Nothing to show
+      }
     }
-    table.setModel(new ProductTableModel(api.fetch(query)));
   }
 }
@@ -0,0 +1,39 @@
+package se.itu.systemet.metrics;
+
+/**
+ * The events counted by {@link Metrics}.
+ */
+public enum Counter {
+
+  /** Queries dispatched by the GUI */
+  QUERIES("queries"),
+
+  /** Requests actually sent to the REST API */
+  REQUESTS("requests"),
+
+  /** Fetches answered from the cache */
+  CACHE_HITS("cache hits"),
+
+  /** Fetches the cache had to pass on */
+  CACHE_MISSES("cache misses"),
+
+  /** Fetches cancelled because a newer Query superseded them */
+  CANCELLATIONS("cancellations"),
+
+  /** Fetches which failed with an exception */
+  FAILURES("failures");
+
+  private String description;
+
+  private Counter(String description) {
+    this.description = description;
+  }
+
+  /**
+   * Returns a short description of this Counter, for dumps.
+   * @return A short description of this Counter
+   */
+  public String description() {
+    return description;
+  }
+}
@@ -0,0 +1,127 @@
+package se.itu.systemet.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>A histogram of latencies in nanoseconds, which any number of
+ * threads may record to without locking.</p>
+ *
+ * <p>Like an HdrHistogram, the buckets are log-linear: values below
+ * 256 get a bucket each, and every power of two above that is split
+ * into 128 buckets of equal width. So any value is known within 1 %,
+ * from a nanosecond up to more than an hour, in a fixed array of
+ * counts which is never resized. Values above {@link #MAX_VALUE} are
+ * counted as MAX_VALUE.</p>
+ */
+public class Histogram {
+
+  /**
+   * The largest value told apart from larger ones: 2^42 ns, about 73 minutes.
+   */
+  public static final long MAX_VALUE = (1L << 42) - 1;
+
+  private static final int SUB_BUCKET_BITS = 7;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+  private AtomicLongArray counts = new AtomicLongArray(index(MAX_VALUE) + 1);
+  private LongAdder count = new LongAdder();
+  private LongAdder sum = new LongAdder();
+  private AtomicLong max = new AtomicLong();
+
+  /**
+   * Records a value.
+   * @param value The value (e.g. a latency in nanoseconds) to record.
+   * Negative values are recorded as 0.
+   */
+  public void record(long value) {
+    long clamped = Math.max(0, Math.min(value, MAX_VALUE));
+    counts.incrementAndGet(index(clamped));
+    count.increment();
+    sum.add(clamped);
+    if (clamped > max.get()) {
+      max.accumulateAndGet(clamped, Math::max);
+    }
+  }
+
+  /* The bucket of a value: (magnitude << SUB_BUCKET_BITS) + the top bits of the value */
+  static int index(long value) {
+    if (value < 2 * SUB_BUCKETS) {
+      return (int)value;
+    }
+    int magnitude = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+    return (magnitude << SUB_BUCKET_BITS) + (int)(value >>> magnitude);
+  }
+
+  /* The largest value which falls in a bucket */
+  static long highestValue(int index) {
+    if (index < 2 * SUB_BUCKETS) {
+      return index;
+    }
+    int magnitude = (index >> SUB_BUCKET_BITS) - 1;
+    long subBucket = index - (magnitude << SUB_BUCKET_BITS);
+    return ((subBucket + 1) << magnitude) - 1;
+  }
+
+  /**
+   * Returns the number of values recorded.
+   * @return The number of values recorded
+   */
+  public long count() {
+    return count.sum();
+  }
+
+  /**
+   * Returns the mean of the values recorded, or 0 if there are none.
+   * @return The mean of the values recorded
+   */
+  public double mean() {
+    long n = count.sum();
+    return n == 0 ? 0 : (double)sum.sum() / n;
+  }
+
+  /**
+   * Returns the largest value recorded, or 0 if there are none.
+   * @return The largest value recorded
+   */
+  public long max() {
+    return max.get();
+  }
+
+  /**
+   * Returns a value which at least the specified percentage of the
+   * recorded values are less than or equal to - the upper bound of the
+   * bucket where that percentage is reached, but never more than max().
+   * @param percentile The percentage, e.g. 99.9
+   * @return The value at the percentile, or 0 if there are no values
+   */
+  public long percentile(double percentile) {
+    long n = count.sum();
+    if (n == 0) {
+      return 0;
+    }
+    long wanted = Math.max(1, (long)Math.ceil(n * Math.min(percentile, 100) / 100));
+    long seen = 0;
+    for (int i = 0; i < counts.length(); i++) {
+      seen += counts.get(i);
+      if (seen >= wanted) {
+        return Math.min(highestValue(i), max());
+      }
+    }
+    return max();
+  }
+
+  /**
+   * Forgets all recorded values. Values recorded at the same time by
+   * other threads may or may not be kept.
+   */
+  public void reset() {
+    for (int i = 0; i < counts.length(); i++) {
+      counts.set(i, 0);
+    }
+    count.reset();
+    sum.reset();
+    max.set(0);
+  }
+}
@@ -0,0 +1,176 @@
+package se.itu.systemet.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * <p>Latencies and counts for the way from an edit in the search GUI
+ * to the table showing the result: a Histogram for each {@link Stage}
+ * and a count for each {@link Counter}.</p>
+ *
+ * <p>Metrics are off unless the system property systemet.metrics is
+ * "true". The flag is a static final field, so when metrics are off
+ * the JIT compiler removes the calls below altogether - not even the
+ * clock is read. When metrics are on, they are registered as the
+ * MXBean se.itu.systemet:type=Metrics, and dumped to System.err when
+ * the application exits.</p>
+ *
+ * <p>Typical use:
+ *<pre>
+ * long start = Metrics.start();
+ * List&lt;Product&gt; products = api.fetch(query);
+ * Metrics.record(Stage.FETCH, start);
+ *</pre>
+ * </p>
+ */
+public class Metrics {
+
+  /**
+   * True if metrics are recorded, i.e. if the system property
+   * systemet.metrics is "true".
+   */
+  public static final boolean ENABLED = Boolean.getBoolean("systemet.metrics");
+
+  /**
+   * The name the MXBean is registered under.
+   */
+  public static final String OBJECT_NAME = "se.itu.systemet:type=Metrics";
+
+  private static final Histogram[] HISTOGRAMS = new Histogram[Stage.values().length];
+  private static final LongAdder[] COUNTERS = new LongAdder[Counter.values().length];
+
+  static {
+    for (int i = 0; i < HISTOGRAMS.length; i++) {
+      HISTOGRAMS[i] = new Histogram();
+    }
+    for (int i = 0; i < COUNTERS.length; i++) {
+      COUNTERS[i] = new LongAdder();
+    }
+    if (ENABLED) {
+      register();
+      Runtime.getRuntime().addShutdownHook(new Thread(() -> System.err.print(dump()), "metrics-dump"));
+    }
+  }
+
+  // No instances, please
+  private Metrics() {}
+
+  /**
+   * Returns the start time of something to record, or 0 if metrics are off.
+   * @return System.nanoTime(), or 0 if metrics are off
+   */
+  public static long start() {
+    return ENABLED ? System.nanoTime() : 0;
+  }
+
+  /**
+   * Records the time from start until now for a Stage.
+   * @param stage The Stage to record for
+   * @param start The time from {@link #start()}
+   */
+  public static void record(Stage stage, long start) {
+    if (ENABLED && start != 0) {
+      HISTOGRAMS[stage.ordinal()].record(System.nanoTime() - start);
+    }
+  }
+
+  /**
+   * Adds one to a Counter.
+   * @param counter The Counter to add one to
+   */
+  public static void count(Counter counter) {
+    if (ENABLED) {
+      COUNTERS[counter.ordinal()].increment();
+    }
+  }
+
+  /**
+   * Returns the Histogram of a Stage, in nanoseconds.
+   * @param stage The Stage whose Histogram to return
+   * @return The Histogram of the Stage
+   */
+  public static Histogram histogram(Stage stage) {
+    return HISTOGRAMS[stage.ordinal()];
+  }
+
+  /**
+   * Returns the value of a Counter.
+   * @param counter The Counter whose value to return
+   * @return The value of the Counter
+   */
+  public static long value(Counter counter) {
+    return COUNTERS[counter.ordinal()].sum();
+  }
+
+  /**
+   * Forgets all latencies and counts recorded so far.
+   */
+  public static void reset() {
+    for (Histogram histogram : HISTOGRAMS) {
+      histogram.reset();
+    }
+    for (LongAdder counter : COUNTERS) {
+      counter.reset();
+    }
+  }
+
+  /**
+   * Returns all metrics as plain text: a line per Stage with its
+   * latencies in milliseconds, and a line per Counter.
+   * @return All metrics as plain text
+   */
+  public static String dump() {
+    StringBuilder text = new StringBuilder();
+    text.append(String.format("%-18s %8s %9s %9s %9s %9s %9s%n",
+                              "stage (ms)", "count", "mean", "p50", "p90", "p99", "max"));
+    for (Stage stage : Stage.values()) {
+      StageStatistics statistics = StageStatistics.of(stage, histogram(stage));
+      text.append(String.format("%-18s %8d %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                                stage.description(), statistics.getCount(), statistics.getMeanMillis(),
+                                statistics.getP50Millis(), statistics.getP90Millis(),
+                                statistics.getP99Millis(), statistics.getMaxMillis()));
+    }
+    for (Counter counter : Counter.values()) {
+      text.append(String.format("%-18s %8d%n", counter.description(), value(counter)));
+    }
+    return text.toString();
+  }
+
+  private static void register() {
+    try {
+      ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsMXBean() {
+          public List<StageStatistics> getStages() {
+            List<StageStatistics> stages = new ArrayList<>();
+            for (Stage stage : Stage.values()) {
+              stages.add(StageStatistics.of(stage, histogram(stage)));
+            }
+            return stages;
+          }
+
+          public Map<String, Long> getCounters() {
+            Map<String, Long> counters = new LinkedHashMap<>();
+            for (Counter counter : Counter.values()) {
+              counters.put(counter.name(), value(counter));
+            }
+            return counters;
+          }
+
+          public String dump() {
+            return Metrics.dump();
+          }
+
+          public void reset() {
+            Metrics.reset();
+          }
+        }, new ObjectName(OBJECT_NAME));
+    } catch (JMException e) {
+      System.err.println("Could not register metrics: " + e.getMessage());
+    }
+  }
+}
@@ -0,0 +1,35 @@
+package se.itu.systemet.metrics;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The management interface of {@link Metrics}, registered as
+ * se.itu.systemet:type=Metrics when metrics are enabled, so that e.g.
+ * JConsole or VisualVM can show where the time goes.
+ */
+public interface MetricsMXBean {
+
+  /**
+   * Returns the latencies of each Stage.
+   * @return The latencies of each Stage
+   */
+  List<StageStatistics> getStages();
+
+  /**
+   * Returns the value of each Counter, by name.
+   * @return The value of each Counter, by name
+   */
+  Map<String, Long> getCounters();
+
+  /**
+   * Returns all metrics as plain text.
+   * @return All metrics as plain text
+   */
+  String dump();
+
+  /**
+   * Forgets all latencies and counts recorded so far.
+   */
+  void reset();
+}
@@ -0,0 +1,45 @@
+package se.itu.systemet.metrics;
+
+/**
+ * The stages between an edit in the search GUI and the table showing
+ * the result, whose latencies are recorded by {@link Metrics}. The
+ * stages overlap: FETCH includes DECODE when the products come over
+ * HTTP, and EDT_APPLY includes TABLE_MODEL.
+ */
+public enum Stage {
+
+  /** From the last input event until its Query is dispatched - mostly the debounce delay */
+  INPUT("input to dispatch"),
+
+  /** Building the Query (and its query string) from the input fields */
+  QUERY_BUILD("query build"),
+
+  /** From asking the ApiAccess for the products until the last one has arrived */
+  FETCH("fetch"),
+
+  /** Reading and decoding one JSON response, from its first byte to its last */
+  DECODE("decode"),
+
+  /** Updating the ProductTableModel with new products */
+  TABLE_MODEL("table model"),
+
+  /** Work done on the Event Dispatch Thread to show a batch or a result */
+  EDT_APPLY("EDT apply"),
+
+  /** From the last input event until the table shows the whole result */
+  END_TO_END("end to end");
+
+  private String description;
+
+  private Stage(String description) {
+    this.description = description;
+  }
+
+  /**
+   * Returns a short description of this Stage, for dumps.
+   * @return A short description of this Stage
+   */
+  public String description() {
+    return description;
+  }
+}
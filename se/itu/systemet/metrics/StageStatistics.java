@@ -0,0 +1,71 @@
+package se.itu.systemet.metrics;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * The latencies recorded for one {@link Stage}, in milliseconds, as
+ * shown by the MetricsMXBean.
+ */
+public class StageStatistics {
+
+  private String stage;
+  private long count;
+  private double meanMillis;
+  private double p50Millis;
+  private double p90Millis;
+  private double p99Millis;
+  private double maxMillis;
+
+  /**
+   * Creates a new StageStatistics.
+   */
+  @ConstructorProperties({ "stage", "count", "meanMillis", "p50Millis", "p90Millis", "p99Millis", "maxMillis" })
+  public StageStatistics(String stage, long count, double meanMillis,
+                         double p50Millis, double p90Millis, double p99Millis, double maxMillis) {
+    this.stage = stage;
+    this.count = count;
+    this.meanMillis = meanMillis;
+    this.p50Millis = p50Millis;
+    this.p90Millis = p90Millis;
+    this.p99Millis = p99Millis;
+    this.maxMillis = maxMillis;
+  }
+
+  static StageStatistics of(Stage stage, Histogram histogram) {
+    return new StageStatistics(stage.name(), histogram.count(), millis(histogram.mean()),
+                               millis(histogram.percentile(50)), millis(histogram.percentile(90)),
+                               millis(histogram.percentile(99)), millis(histogram.max()));
+  }
+
+  private static double millis(double nanos) {
+    return nanos / 1_000_000;
+  }
+
+  public String getStage() {
+    return stage;
+  }
+
+  public long getCount() {
+    return count;
+  }
+
+  public double getMeanMillis() {
+    return meanMillis;
+  }
+
+  public double getP50Millis() {
+    return p50Millis;
+  }
+
+  public double getP90Millis() {
+    return p90Millis;
+  }
+
+  public double getP99Millis() {
+    return p99Millis;
+  }
+
+  public double getMaxMillis() {
+    return maxMillis;
+  }
+}
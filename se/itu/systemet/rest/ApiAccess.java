@@ -1,6 +1,9 @@
 package se.itu.systemet.rest;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
 import se.itu.systemet.domain.Product;
 
 /**
@@ -14,4 +17,96 @@ public interface ApiAccess {
    */
   public List<Product> fetch(Query query);
 
+  /**
+   * <p>Returns the Products for a Query as a Stream, which implementations
+   * may produce while the response is still arriving, so that the first
+   * Products are available before the last ones are downloaded.</p>
+   * <p>The Stream holds on to the connection until it is closed, so use
+   * it in a try-with-resources statement.</p>
+   * <p>The default implementation streams the List from fetch(Query).</p>
+   * @param query The Query used for fetching Products from the API.
+   * @return A Stream&lt;Product&gt; using the specified Query.
+   */
+  public default Stream<Product> stream(Query query) {
+    return fetch(query).stream();
+  }
+
+  /**
+   * <p>Returns the number of Products per product group and per type
+   * for a Query, counted as described in FacetCounts.</p>
+   * <p>The default implementation fetches the Products for the Query
+   * without its product_group and type params, and counts them.</p>
+   * @param query The Query to count Products for.
+   * @return The FacetCounts for the specified Query.
+   */
+  public default FacetCounts facetCounts(Query query) {
+    Query withoutFacets = query;
+    if (query instanceof RestQuery) {
+      withoutFacets = ((RestQuery)query).without(FacetCounts.PRODUCT_GROUP, FacetCounts.TYPE);
+    }
+    return FacetCounts.count(fetch(withoutFacets), query);
+  }
+
+  /**
+   * <p>Fetches the Products for a Query without blocking the calling
+   * thread.</p>
+   * <p>The default implementation runs fetch(Query) on a pool of
+   * daemon threads.</p>
+   * @param query The Query used for fetching Products from the API.
+   * @return A CompletableFuture which completes with the Products, or
+   * exceptionally with the ApiAccessException (or InvalidQueryException)
+   * fetch(Query) would have thrown.
+   */
+  public default CompletableFuture<List<Product>> fetchAsync(Query query) {
+    return CompletableFuture.supplyAsync(() -> fetch(query), ApiExecutor.POOL);
+  }
+
+  /**
+   * <p>Fetches the Products for several Queries at the same time, for
+   * screens which need more than one result. All requests are started
+   * at once, so the wait is about that of the slowest, not the sum.</p>
+   * <p>Each future completes on its own, as soon as its result is in,
+   * so the caller can show each result when it arrives - or wait for
+   * all of them with CompletableFuture.allOf().</p>
+   * @param queries The Queries to fetch Products for.
+   * @return One CompletableFuture per Query, in the same order.
+   */
+  public default List<CompletableFuture<List<Product>>> fetchAll(List<Query> queries) {
+    List<CompletableFuture<List<Product>>> results = new ArrayList<>(queries.size());
+    for (Query query : queries) {
+      results.add(fetchAsync(query));
+    }
+    return results;
+  }
+
+  /**
+   * <p>Counts the Products per product group and per type for a Query
+   * without blocking the calling thread, e.g. while the Products
+   * themselves are being fetched.</p>
+   * <p>The default implementation counts the result of fetchAsync() for
+   * the Query without its product_group and type params.</p>
+   * @param query The Query to count Products for.
+   * @return A CompletableFuture which completes with the FacetCounts.
+   */
+  public default CompletableFuture<FacetCounts> facetCountsAsync(Query query) {
+    Query withoutFacets = query;
+    if (query instanceof RestQuery) {
+      withoutFacets = ((RestQuery)query).without(FacetCounts.PRODUCT_GROUP, FacetCounts.TYPE);
+    }
+    return fetchAsync(withoutFacets).thenApply(products -> FacetCounts.count(products, query));
+  }
+
+  /**
+   * <p>Returns the changes to the catalog since a version of it, so that
+   * a local copy of the catalog can be kept up to date without fetching
+   * all of it again.</p>
+   * <p>The default implementation fetches the whole catalog, as
+   * CatalogChanges.full().</p>
+   * @param version The version of the catalog we have, or
+   * CatalogChanges.UNKNOWN_VERSION for the whole catalog.
+   * @return The changes since version.
+   */
+  public default CatalogChanges changesSince(long version) {
+    return CatalogChanges.full(fetch(QueryFactory.getQuery()));
+  }
 }
@@ -0,0 +1,49 @@
+package se.itu.systemet.rest;
+
+/**
+ * Signals that an ApiAccess failed to fetch Products, for instance
+ * because the REST API could not be reached or returned a response
+ * we could not understand.
+ */
+public class ApiAccessException extends RuntimeException {
+
+  private static final long serialVersionUID = 1L;
+
+  private int status = -1;
+
+  /**
+   * Creates a new ApiAccessException with the specified message.
+   * @param message A description of what went wrong
+   */
+  public ApiAccessException(String message) {
+    super(message);
+  }
+
+  /**
+   * Creates a new ApiAccessException with the specified message and cause.
+   * @param message A description of what went wrong
+   * @param cause The underlying cause of this exception
+   */
+  public ApiAccessException(String message, Throwable cause) {
+    super(message, cause);
+  }
+
+  /**
+   * Creates a new ApiAccessException for an unexpected HTTP status.
+   * @param message A description of what went wrong
+   * @param status The HTTP status the API answered with
+   */
+  public ApiAccessException(String message, int status) {
+    super(message);
+    this.status = status;
+  }
+
+  /**
+   * Returns the HTTP status the API answered with.
+   * @return The HTTP status, or -1 if the API didn't answer with one
+   * (e.g. because it couldn't be reached)
+   */
+  public int status() {
+    return status;
+  }
+}
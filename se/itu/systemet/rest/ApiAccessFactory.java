@@ -1,14 +1,148 @@
 package se.itu.systemet.rest;
 
+import se.itu.systemet.storage.CatalogSnapshot;
+
 /**
- * A Factory class for creating an ApiAccess object.
+ * <p>A Factory class for creating an ApiAccess object.</p>
+ * <p>The following system properties control what you get:
+ *<pre>
+ * systemet.api.url          - the URL of the REST API
+ *                             (default http://localhost:8080/search/products/all)
+ * systemet.api.fake         - if "true", an ApiAccess which never finds any products
+ * systemet.api.mode         - "catalog" to load the whole catalog once and filter
+ *                             on alcohol and price locally, or "remote" to ask
+ *                             the REST API every time (default catalog)
+ * systemet.snapshot.file    - where catalog mode keeps its snapshot of the catalog
+ *                             (default ~/.systemet/catalog.snapshot)
+ * systemet.cache.size       - the number of results to cache, 0 turns caching off
+ *                             (default 100)
+ * systemet.cache.ttl.millis - how long a cached result is valid (default 300000)
+ * systemet.api.timeout.millis - how long a fetch from the REST API may take,
+ *                             retries included (default 10000)
+ * systemet.api.retries      - how many times a failed fetch is tried again (default 2)
+ * systemet.api.max.concurrent - the most fetches from the REST API in flight
+ *                             at once (default 8)
+ * systemet.sync.millis      - in catalog mode, how often to fetch the changes to
+ *                             the catalog, 0 turns syncing off (default 0)
+ *</pre>
+ * </p>
  */
 public class ApiAccessFactory {
+
+  /**
+   * The URL used for the REST API unless the system property
+   * systemet.api.url says otherwise.
+   */
+  public static final String DEFAULT_URL = "http://localhost:8080/search/products/all";
+
+  /**
+   * The number of results cached unless the system property
+   * systemet.cache.size says otherwise.
+   */
+  public static final int DEFAULT_CACHE_SIZE = 100;
+
+  /**
+   * The number of milliseconds a cached result is valid unless
+   * the system property systemet.cache.ttl.millis says otherwise.
+   */
+  public static final long DEFAULT_CACHE_TTL_MILLIS = 5 * 60 * 1000;
+
+  /**
+   * The number of milliseconds a fetch from the REST API may take unless
+   * the system property systemet.api.timeout.millis says otherwise.
+   */
+  public static final long DEFAULT_TIMEOUT_MILLIS = 10_000;
+
+  /**
+   * The mode used unless the system property systemet.api.mode
+   * says otherwise.
+   */
+  public static final String DEFAULT_MODE = "catalog";
+
   /**
    * Returns an implementation of ApiAccess.
    * @return An implementation of ApiAccess.
    */
   public static ApiAccess getApiAccess() {
-    return new FakeApiAccess();
+    if (Boolean.getBoolean("systemet.api.fake")) {
+      return new FakeApiAccess();
+    }
+    return getApiAccess(System.getProperty("systemet.api.url", DEFAULT_URL));
+  }
+
+  /**
+   * Returns an implementation of ApiAccess talking to the REST API
+   * at the specified URL.
+   * @param url The URL of the REST API
+   * @return An implementation of ApiAccess.
+   */
+  public static ApiAccess getApiAccess(String url) {
+    ApiAccess api = resilient(new HttpApiAccess(url, timeoutMillis()));
+    int cacheSize = Integer.getInteger("systemet.cache.size", DEFAULT_CACHE_SIZE);
+    if (cacheSize > 0) {
+      api = cached(api, cacheSize, Long.getLong("systemet.cache.ttl.millis", DEFAULT_CACHE_TTL_MILLIS));
+    }
+    if ("catalog".equals(System.getProperty("systemet.api.mode", DEFAULT_MODE))) {
+      CatalogApiAccess catalog = catalog(api, new CatalogSnapshot(CatalogSnapshot.defaultFile()));
+      long syncMillis = Long.getLong("systemet.sync.millis", 0);
+      if (syncMillis > 0) {
+        catalog.startSync(syncMillis);
+      }
+      api = catalog;
+    }
+    return api;
+  }
+
+  /**
+   * Returns an ApiAccess with deadlines, retries, a circuit breaker and
+   * a bulkhead in front of the specified ApiAccess, configured by the
+   * system properties above.
+   * @param api The ApiAccess to protect callers from
+   * @return A ResilientApiAccess in front of api
+   */
+  public static ResilientApiAccess resilient(ApiAccess api) {
+    return new ResilientApiAccess.Builder(api)
+      .timeoutMillis(timeoutMillis())
+      .retries(Integer.getInteger("systemet.api.retries", 2))
+      .maxConcurrent(Integer.getInteger("systemet.api.max.concurrent", 8))
+      .build();
+  }
+
+  /* The deadline of a fetch, which is also as long as a single request may wait */
+  private static long timeoutMillis() {
+    return Long.getLong("systemet.api.timeout.millis", DEFAULT_TIMEOUT_MILLIS);
+  }
+
+  /**
+   * Returns an ApiAccess which caches the results of the specified ApiAccess.
+   * @param api The ApiAccess whose results to cache
+   * @param maxEntries The maximum number of results to keep
+   * @param ttlMillis The number of milliseconds a result is valid
+   * @return An ApiAccess caching the results of api
+   */
+  public static CachingApiAccess cached(ApiAccess api, int maxEntries, long ttlMillis) {
+    return new CachingApiAccess(api, maxEntries, ttlMillis);
+  }
+
+  /**
+   * Returns an ApiAccess which loads the whole catalog from the specified
+   * ApiAccess once, and then filters on alcohol and price locally.
+   * @param api The ApiAccess to load the catalog from
+   * @return An ApiAccess answering range queries from a local catalog
+   */
+  public static CatalogApiAccess catalog(ApiAccess api) {
+    return new CatalogApiAccess(api);
+  }
+
+  /**
+   * Returns an ApiAccess which starts from a snapshot of the catalog,
+   * refreshes it from the specified ApiAccess, and then filters on
+   * alcohol and price locally.
+   * @param api The ApiAccess to load the catalog from
+   * @param snapshot The snapshot to start from and save to
+   * @return An ApiAccess answering range queries from a local catalog
+   */
+  public static CatalogApiAccess catalog(ApiAccess api, CatalogSnapshot snapshot) {
+    return new CatalogApiAccess(api, snapshot);
   }
 }
@@ -0,0 +1,25 @@
+package se.itu.systemet.rest;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The threads which run the blocking parts of asynchronous fetches:
+ * ApiAccess implementations without an asynchronous API of their own,
+ * and decoding of HTTP responses. They are daemon threads, so they
+ * don't keep the application running.
+ */
+class ApiExecutor {
+
+  private static final AtomicInteger COUNT = new AtomicInteger();
+
+  static final ExecutorService POOL = Executors.newCachedThreadPool(task -> {
+      Thread thread = new Thread(task, "api-worker-" + COUNT.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+
+  // No instances, please
+  private ApiExecutor() {}
+}
@@ -0,0 +1,323 @@
+package se.itu.systemet.rest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import se.itu.systemet.domain.Product;
+import se.itu.systemet.metrics.Counter;
+import se.itu.systemet.metrics.Metrics;
+
+/**
+ * <p>An ApiAccess which remembers the results of another ApiAccess.</p>
+ *
+ * <p>Results are cached by a canonical form of the Query, so that
+ * <code>min_price=10&amp;max_price=20</code> and
+ * <code>max_price=20,0&amp;min_price=10</code> share one entry. At most
+ * maxEntries results are kept - the least recently used is evicted
+ * first - and a result older than the time to live is fetched again.</p>
+ *
+ * <p>The Lists returned are unmodifiable, since they are shared between
+ * callers.</p>
+ *
+ * <p>A stale result - like the last good result a ResilientApiAccess
+ * serves while its circuit is open - is passed on, but not cached, so
+ * fresh results are fetched again as soon as the API is back.</p>
+ */
+public class CachingApiAccess implements ApiAccess {
+
+  private ApiAccess api;
+  private int maxEntries;
+  private long ttlNanos;
+  private Map<String, Entry> cache;
+  private long hits;
+  private long misses;
+  private long evictions;
+  private long expirations;
+  private long coalesced;
+  private Map<String, CompletableFuture<List<Product>>> pending = new HashMap<>(); // fetches in flight
+
+  private static class Entry {
+    List<Product> products;
+    long expires;
+
+    Entry(List<Product> products, long expires) {
+      this.products = products;
+      this.expires = expires;
+    }
+  }
+
+  /**
+   * Creates a new CachingApiAccess in front of the specified ApiAccess.
+   * @param api The ApiAccess whose results to cache
+   * @param maxEntries The maximum number of results to keep
+   * @param ttlMillis The number of milliseconds a result is valid
+   */
+  public CachingApiAccess(ApiAccess api, int maxEntries, long ttlMillis) {
+    this.api = api;
+    this.maxEntries = maxEntries;
+    this.ttlNanos = ttlMillis * 1_000_000L;
+    // access order makes the first entry the least recently used one
+    this.cache = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+        if (size() > CachingApiAccess.this.maxEntries) {
+          evictions++;
+          return true;
+        }
+        return false;
+      }
+    };
+  }
+
+  /**
+   * Returns a List&lt;Product&gt; using a Query, from the cache if possible.
+   * @param query The Query used for fetching Products from the API.
+   * @return An unmodifiable List&lt;Product&gt; using the specified Query.
+   */
+  public List<Product> fetch(Query query) {
+    String key = key(query);
+    List<Product> products = lookup(key);
+    if (products != null) {
+      return products;
+    }
+    // Fetch without holding the lock, so that other queries aren't blocked
+    products = api.fetch(query);
+    if (StaleResult.isStale(products)) {
+      return products;
+    }
+    products = Collections.unmodifiableList(products);
+    store(key, products);
+    return products;
+  }
+
+  /**
+   * Returns the Products for a Query as a Stream, from the cache if possible.
+   * Otherwise the Stream of the underlying ApiAccess is passed through,
+   * and its Products are cached once the Stream has been read to the end.
+   * @param query The Query used for fetching Products from the API.
+   * @return A Stream&lt;Product&gt; using the specified Query.
+   */
+  @Override
+  public Stream<Product> stream(Query query) {
+    String key = key(query);
+    List<Product> cached = lookup(key);
+    if (cached != null) {
+      return cached.stream();
+    }
+    Stream<Product> source = api.stream(query);
+    Spliterator<Product> products = source.spliterator();
+    if (StaleResult.isStale(products)) {
+      return StreamSupport.stream(products, false).onClose(source::close);
+    }
+    List<Product> received = new ArrayList<>();
+    Spliterator<Product> caching =
+      new Spliterators.AbstractSpliterator<Product>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+        private boolean stored;
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Product> action) {
+          if (products.tryAdvance(product -> {
+                received.add(product);
+                action.accept(product);
+              })) {
+            return true;
+          }
+          if (!stored) {
+            store(key, Collections.unmodifiableList(received));
+            stored = true;
+          }
+          return false;
+        }
+      };
+    return StreamSupport.stream(caching, false).onClose(source::close);
+  }
+
+  /**
+   * Fetches the Products for a Query without blocking, from the cache
+   * if possible. If the same Query is already being fetched (e.g. twice
+   * in one fetchAll()), the fetch in flight is shared instead of asking
+   * the underlying ApiAccess again, so the future returned may be shared
+   * with other callers.
+   * @param query The Query used for fetching Products from the API.
+   * @return A CompletableFuture which completes with an unmodifiable
+   * List&lt;Product&gt;.
+   */
+  @Override
+  public CompletableFuture<List<Product>> fetchAsync(Query query) {
+    String key = key(query);
+    CompletableFuture<List<Product>> result;
+    synchronized (this) {
+      List<Product> products = lookup(key);
+      if (products != null) {
+        return CompletableFuture.completedFuture(products);
+      }
+      result = pending.get(key);
+      if (result != null) {
+        coalesced++;
+        return result;
+      }
+      result = new CompletableFuture<>();
+      pending.put(key, result);
+    }
+    CompletableFuture<List<Product>> shared = result;
+    CompletableFuture<List<Product>> fetching;
+    try {
+      fetching = api.fetchAsync(query);
+    } catch (RuntimeException e) {
+      // Or the callers which joined the fetch in the meantime, and all later ones, would wait forever
+      synchronized (this) {
+        pending.remove(key);
+      }
+      shared.completeExceptionally(e);
+      throw e;
+    }
+    fetching.whenComplete((products, e) -> {
+        synchronized (this) {
+          pending.remove(key);
+        }
+        if (e != null) {
+          shared.completeExceptionally(e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+        } else if (StaleResult.isStale(products)) {
+          shared.complete(products);
+        } else {
+          List<Product> unmodifiable = Collections.unmodifiableList(products);
+          store(key, unmodifiable);
+          shared.complete(unmodifiable);
+        }
+      });
+    return shared;
+  }
+
+  /**
+   * Returns the changes to the catalog since a version of it, always
+   * from the underlying ApiAccess - they are never cached.
+   * @param version The version of the catalog we have
+   * @return The changes since version
+   */
+  @Override
+  public CatalogChanges changesSince(long version) {
+    return api.changesSince(version);
+  }
+
+  private synchronized List<Product> lookup(String key) {
+    Entry entry = cache.get(key);
+    if (entry == null) {
+      misses++;
+      Metrics.count(Counter.CACHE_MISSES);
+      return null;
+    }
+    if (System.nanoTime() - entry.expires > 0) {
+      cache.remove(key);
+      expirations++;
+      misses++;
+      Metrics.count(Counter.CACHE_MISSES);
+      return null;
+    }
+    hits++;
+    Metrics.count(Counter.CACHE_HITS);
+    return entry.products;
+  }
+
+  private synchronized void store(String key, List<Product> products) {
+    cache.put(key, new Entry(products, System.nanoTime() + ttlNanos));
+  }
+
+  /**
+   * Returns the key a Query is cached by: the key of its ProductQuery
+   * if it has one, so that e.g. min_price=1,50 and min_price=1.5 share
+   * an entry.
+   */
+  static String key(Query query) {
+    try {
+      ProductQuery productQuery = ProductQuery.of(query);
+      if (productQuery != null) {
+        return productQuery.key();
+      }
+    } catch (InvalidQueryException e) {
+      // The ApiAccess will reject it, so it won't be cached anyway
+    }
+    if (query instanceof RestQuery) {
+      return ((RestQuery)query).canonicalString();
+    }
+    return query.toQueryString();
+  }
+
+  /**
+   * Removes all cached results.
+   */
+  public synchronized void clear() {
+    cache.clear();
+  }
+
+  /**
+   * Returns the number of fetches answered from the cache.
+   * @return The number of fetches answered from the cache
+   */
+  public synchronized long hits() {
+    return hits;
+  }
+
+  /**
+   * Returns the number of fetches passed on to the underlying ApiAccess.
+   * @return The number of fetches passed on to the underlying ApiAccess
+   */
+  public synchronized long misses() {
+    return misses;
+  }
+
+  /**
+   * Returns the number of results evicted to make room for new ones.
+   * @return The number of evicted results
+   */
+  public synchronized long evictions() {
+    return evictions;
+  }
+
+  /**
+   * Returns the number of results dropped because they were too old.
+   * @return The number of expired results
+   */
+  public synchronized long expirations() {
+    return expirations;
+  }
+
+  /**
+   * Returns the number of asynchronous fetches which shared a fetch of
+   * the same Query already in flight.
+   * @return The number of coalesced fetches
+   */
+  public synchronized long coalesced() {
+    return coalesced;
+  }
+
+  /**
+   * Returns the number of results currently cached.
+   * @return The number of results currently cached
+   */
+  public synchronized int size() {
+    return cache.size();
+  }
+
+  /**
+   * Returns the statistics of this cache as a String.
+   * @return The statistics of this cache as a String
+   */
+  @Override
+  public synchronized String toString() {
+    return "entries: " + cache.size() + "/" + maxEntries +
+      ", hits: " + hits + ", misses: " + misses +
+      ", evictions: " + evictions + ", expirations: " + expirations +
+      ", coalesced: " + coalesced;
+  }
+}
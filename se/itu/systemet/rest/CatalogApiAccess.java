@@ -0,0 +1,283 @@
+package se.itu.systemet.rest;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import se.itu.systemet.domain.Product;
+import se.itu.systemet.storage.CatalogSnapshot;
+
+/**
+ * <p>An ApiAccess which loads the whole catalog once from another
+ * ApiAccess and then answers queries on name, product_group, type,
+ * min_alcohol, max_alcohol, min_price and max_price locally, from an
+ * in-memory index.</p>
+ *
+ * <p>The name param matches Products whose names contain its value,
+ * ignoring case and accents, so name=chateau finds "Château Margaux".
+ * A value ending with a '*' matches names starting with the rest of
+ * it, so name=bre* finds "Brewdog Punk IPA" but not "Ale Brew".</p>
+ *
+ * <p>Queries with any other params are passed on to the other
+ * ApiAccess. A known param with a value which can't be used, like
+ * min_price=abc, is rejected with an InvalidQueryException, without
+ * asking the other ApiAccess.</p>
+ *
+ * <p>With a CatalogSnapshot, the catalog is loaded from the snapshot
+ * if there is one, and then refreshed from the other ApiAccess in the
+ * background. Each catalog loaded from the ApiAccess is saved to the
+ * snapshot, for the next time the application starts.</p>
+ *
+ * <p>Once loaded, the catalog is kept up to date by sync(), which
+ * asks the other ApiAccess only for the changes since the version it
+ * has (see CatalogChanges) and applies them to the index - either when
+ * called, or every so often after startSync().</p>
+ */
+public class CatalogApiAccess implements ApiAccess {
+
+  private ApiAccess api;
+  private CatalogSnapshot snapshot; // null if we don't use one
+  private volatile CatalogIndex index;
+  private volatile long version = CatalogChanges.UNKNOWN_VERSION;
+  private Object syncLock = new Object();
+  private ScheduledExecutorService syncer; // null until startSync()
+  private List<Runnable> refreshListeners = new CopyOnWriteArrayList<>();
+
+  /**
+   * Creates a new CatalogApiAccess, which loads its catalog from the
+   * specified ApiAccess when it is first needed.
+   * @param api The ApiAccess to load the catalog from
+   */
+  public CatalogApiAccess(ApiAccess api) {
+    this(api, null);
+  }
+
+  /**
+   * Creates a new CatalogApiAccess, which loads its catalog from the
+   * snapshot (if it exists) when it is first needed, and keeps the
+   * snapshot up to date with the catalog of the specified ApiAccess.
+   * @param api The ApiAccess to load the catalog from
+   * @param snapshot The snapshot to start from and save to
+   */
+  public CatalogApiAccess(ApiAccess api, CatalogSnapshot snapshot) {
+    this.api = api;
+    this.snapshot = snapshot;
+  }
+
+  /**
+   * Adds a listener which is run (on a background thread) when the
+   * catalog has been refreshed from the ApiAccess after starting from
+   * a snapshot, so that whoever shows products can fetch them again.
+   * @param listener The listener to run after a refresh
+   */
+  public void addRefreshListener(Runnable listener) {
+    refreshListeners.add(listener);
+  }
+
+  /**
+   * Brings the catalog up to date with the changes since the version
+   * we have, and runs the refresh listeners if there were any. Loads
+   * the catalog first if it isn't loaded.
+   * @return true if the catalog changed
+   */
+  public boolean sync() {
+    CatalogIndex index = index();
+    synchronized (syncLock) {
+      index = this.index; // another sync may have been first
+      CatalogChanges changes = api.changesSince(version);
+      if (changes.isEmpty()) {
+        version = changes.version();
+        return false;
+      }
+      this.index = index.apply(changes);
+      version = changes.version();
+    }
+    for (Runnable listener : refreshListeners) {
+      listener.run();
+    }
+    return true;
+  }
+
+  /**
+   * Starts calling sync() on a background thread, every periodMillis
+   * milliseconds. Failures are reported, and tried again next time.
+   * @param periodMillis The milliseconds between syncs
+   */
+  public synchronized void startSync(long periodMillis) {
+    if (syncer != null) {
+      return;
+    }
+    syncer = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "catalog-sync");
+        thread.setDaemon(true);
+        return thread;
+      });
+    syncer.scheduleWithFixedDelay(() -> {
+        try {
+          sync();
+        } catch (ApiAccessException e) {
+          System.err.println("Could not sync the catalog: " + e.getMessage());
+        }
+      }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Returns a List&lt;Product&gt; using a Query.
+   * @param query The Query used for fetching Products.
+   * @return A List&lt;Product&gt; using the specified Query.
+   */
+  public List<Product> fetch(Query query) {
+    ProductQuery productQuery = ProductQuery.of(query);
+    if (productQuery == null) {
+      return api.fetch(query);
+    }
+    return index().find(productQuery);
+  }
+
+  /**
+   * Returns the Products for a Query as a Stream. Queries answered
+   * locally are already complete, so they are not streamed from the API.
+   * @param query The Query used for fetching Products.
+   * @return A Stream&lt;Product&gt; using the specified Query.
+   */
+  @Override
+  public Stream<Product> stream(Query query) {
+    ProductQuery productQuery = ProductQuery.of(query);
+    if (productQuery == null) {
+      return api.stream(query);
+    }
+    return index().find(productQuery).stream();
+  }
+
+  /**
+   * Returns the number of Products per product group and per type for
+   * a Query, counted from the in-memory index if possible.
+   * @param query The Query to count Products for.
+   * @return The FacetCounts for the specified Query.
+   */
+  @Override
+  public FacetCounts facetCounts(Query query) {
+    ProductQuery productQuery = ProductQuery.of(query);
+    if (productQuery == null) {
+      return api.facetCounts(query);
+    }
+    return index().counts(productQuery);
+  }
+
+  /**
+   * Fetches the Products for a Query without blocking. Queries answered
+   * locally complete right away once the catalog is loaded.
+   * @param query The Query used for fetching Products.
+   * @return A CompletableFuture which completes with the Products.
+   */
+  @Override
+  public CompletableFuture<List<Product>> fetchAsync(Query query) {
+    ProductQuery productQuery;
+    try {
+      productQuery = ProductQuery.of(query);
+    } catch (InvalidQueryException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+    if (productQuery == null) {
+      return api.fetchAsync(query);
+    }
+    return local(index -> index.find(productQuery));
+  }
+
+  /**
+   * Counts the Products per product group and per type for a Query
+   * without blocking, from the in-memory index if possible.
+   * @param query The Query to count Products for.
+   * @return A CompletableFuture which completes with the FacetCounts.
+   */
+  @Override
+  public CompletableFuture<FacetCounts> facetCountsAsync(Query query) {
+    ProductQuery productQuery;
+    try {
+      productQuery = ProductQuery.of(query);
+    } catch (InvalidQueryException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+    if (productQuery == null) {
+      return api.facetCountsAsync(query);
+    }
+    return local(index -> index.counts(productQuery));
+  }
+
+  /* Asks the index, in the background only if the catalog must be loaded first */
+  private <T> CompletableFuture<T> local(Function<CatalogIndex, T> question) {
+    CatalogIndex index = this.index;
+    if (index != null) {
+      return CompletableFuture.completedFuture(question.apply(index));
+    }
+    return CompletableFuture.supplyAsync(() -> question.apply(index()), ApiExecutor.POOL);
+  }
+
+  /**
+   * Loads the whole catalog again from the underlying ApiAccess,
+   * and saves it to the snapshot if there is one.
+   */
+  public void reload() {
+    List<Product> catalog;
+    synchronized (syncLock) {
+      CatalogChanges changes = api.changesSince(CatalogChanges.UNKNOWN_VERSION);
+      catalog = changes.products();
+      index = new CatalogIndex(catalog);
+      version = changes.version();
+    }
+    if (snapshot != null) {
+      try {
+        snapshot.save(catalog);
+      } catch (IOException e) {
+        System.err.println("Could not save the catalog snapshot: " + e.getMessage());
+      }
+    }
+  }
+
+  private CatalogIndex index() {
+    CatalogIndex index = this.index;
+    if (index == null) {
+      synchronized (this) {
+        if (this.index == null) {
+          load();
+        }
+        index = this.index;
+      }
+    }
+    return index;
+  }
+
+  /* Starts from the snapshot if possible, otherwise waits for the API */
+  private void load() {
+    if (snapshot != null && snapshot.exists()) {
+      try {
+        index = new CatalogIndex(snapshot.load());
+        Thread refresh = new Thread(this::refresh, "catalog-refresh");
+        refresh.setDaemon(true);
+        refresh.start();
+        return;
+      } catch (IOException e) {
+        System.err.println("Could not load the catalog snapshot: " + e.getMessage());
+      }
+    }
+    reload();
+  }
+
+  private void refresh() {
+    try {
+      reload();
+    } catch (ApiAccessException e) {
+      System.err.println("Could not refresh the catalog: " + e.getMessage());
+      return;
+    }
+    for (Runnable listener : refreshListeners) {
+      listener.run();
+    }
+  }
+}
@@ -0,0 +1,126 @@
+package se.itu.systemet.rest;
+
+import java.util.List;
+
+import se.itu.systemet.domain.Product;
+
+/**
+ * <p>The changes to the catalog since a version of it, as returned by
+ * ApiAccess.changesSince(): the Products which were added or updated,
+ * and the numbers (Product.nr()) of those which were removed.</p>
+ *
+ * <p>A REST API which can tell what changed answers
+ *<pre>
+ * GET .../search/products/all?changed_since=42
+ *</pre>
+ * with the JSON array of the added and updated Products, and the
+ * headers
+ *<pre>
+ * X-Catalog-Version: 47            - the version after these changes
+ * X-Catalog-Removed: 101,2044      - the numbers of the removed Products
+ * X-Catalog-Full: true             - if the array is the whole catalog, e.g.
+ *                                    because version 42 is too old to know
+ *</pre>
+ * An API without a version header is taken to have sent the whole
+ * catalog, so everything still works - only not in proportion to the
+ * changes.</p>
+ */
+public class CatalogChanges {
+
+  /**
+   * The version of a catalog we don't know the version of. Changes since
+   * it are always the whole catalog.
+   */
+  public static final long UNKNOWN_VERSION = -1;
+
+  /** The param asking for the changes since a version */
+  public static final String CHANGED_SINCE = "changed_since";
+
+  /** The header with the version of the catalog after the changes */
+  public static final String VERSION_HEADER = "X-Catalog-Version";
+
+  /** The header with the comma separated numbers of the removed Products */
+  public static final String REMOVED_HEADER = "X-Catalog-Removed";
+
+  /** The header which is "true" if the whole catalog was sent */
+  public static final String FULL_HEADER = "X-Catalog-Full";
+
+  private long version;
+  private boolean full;
+  private List<Product> products;
+  private int[] removed;
+
+  /**
+   * Creates new CatalogChanges.
+   * @param version The version of the catalog after the changes
+   * @param full true if products is the whole catalog, which replaces
+   * the one we had
+   * @param products The added and updated Products
+   * @param removed The numbers of the removed Products
+   */
+  public CatalogChanges(long version, boolean full, List<Product> products, int[] removed) {
+    this.version = version;
+    this.full = full;
+    this.products = products;
+    this.removed = removed;
+  }
+
+  /**
+   * Returns the whole catalog as changes from nothing, with an unknown version.
+   * @param catalog The whole catalog
+   * @return CatalogChanges replacing the catalog with catalog
+   */
+  public static CatalogChanges full(List<Product> catalog) {
+    return new CatalogChanges(UNKNOWN_VERSION, true, catalog, new int[0]);
+  }
+
+  /**
+   * Returns the version of the catalog after these changes.
+   * @return The version after these changes, or UNKNOWN_VERSION
+   */
+  public long version() {
+    return version;
+  }
+
+  /**
+   * Returns true if products() is the whole catalog, rather than the changes.
+   * @return true if products() is the whole catalog
+   */
+  public boolean isFull() {
+    return full;
+  }
+
+  /**
+   * Returns the added and updated Products - or the whole catalog, if isFull().
+   * @return The added and updated Products
+   */
+  public List<Product> products() {
+    return products;
+  }
+
+  /**
+   * Returns the numbers of the removed Products.
+   * @return The numbers of the removed Products
+   */
+  public int[] removed() {
+    return removed;
+  }
+
+  /**
+   * Returns true if nothing has changed.
+   * @return true if nothing has changed
+   */
+  public boolean isEmpty() {
+    return !full && products.isEmpty() && removed.length == 0;
+  }
+
+  /**
+   * Returns a short description of these changes.
+   * @return A short description of these changes
+   */
+  @Override
+  public String toString() {
+    return full ? "full catalog of " + products.size() + " products, version " + version
+      : products.size() + " added or updated, " + removed.length + " removed, version " + version;
+  }
+}
@@ -0,0 +1,531 @@
+package se.itu.systemet.rest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+import se.itu.systemet.domain.Product;
+import se.itu.systemet.util.ColumnScan;
+import se.itu.systemet.util.IndexSort;
+
+/**
+ * An in-memory index over a whole catalog of Products, answering
+ * alcohol and price range queries without talking to the API.
+ *
+ * The alcohol and price of every Product are kept in sorted arrays,
+ * together with the position of the Product they belong to, so a range
+ * is found with two binary searches. When both ranges are constrained,
+ * we walk the narrower range and check the other one against the
+ * plain columns, which gives us the intersection. When both ranges
+ * are wide, the plain columns are scanned instead - on all cores, for
+ * a big catalog (see ColumnScan).
+ *
+ * Names are searched with a NameIndex, and the Products it finds are
+ * then checked against the alcohol and price columns.
+ *
+ * For each distinct product group and type there is a bitset of the
+ * Products which have it. Selecting several values ORs their bitsets,
+ * and the result is ANDed with the other facet and checked for each
+ * Product matching the name and ranges. The counts per value for the
+ * GUI are counted from the code columns in the same pass - or, when
+ * there is no name or range, as the cardinality of the bitsets.
+ *
+ * An index is never changed once built. Changes to the catalog (see
+ * CatalogChanges) are applied by apply(), which returns a new index
+ * sharing all the structures above, plus a bitset of the positions
+ * which were removed or updated since, and a small index of the
+ * updated and inserted Products - so the cost is in proportion to the
+ * changes, not to the catalog. An updated Product keeps the position
+ * of the one it replaces, and inserted ones come last. When the small
+ * index has grown past a sixteenth of the catalog, apply() builds a
+ * whole new index instead.
+ */
+class CatalogIndex {
+
+  // The overlay may always grow to this many Products before the index is rebuilt
+  private static final int MAX_OVERLAY = 1024;
+
+  private Product[] products;
+  private double[] alcohol;
+  private double[] price;
+  private double[] sortedAlcohol;
+  private int[] alcoholOrder; // alcoholOrder[i] is the position of the product with sortedAlcohol[i]
+  private double[] sortedPrice;
+  private int[] priceOrder;
+  private NameIndex names;
+  private Facet productGroups;
+  private Facet types;
+  private volatile NrIndex nrIndex; // built the first time changes are applied
+
+  // Changes applied since the index above was built (see apply()) - null if none
+  private BitSet replaced; // positions of the Products removed or updated since
+  private CatalogIndex overlay; // the updated and inserted Products, in catalog order
+  private int[] overlayPositions; // overlayPositions[i] is the position of overlay Product i
+  private Map<Integer, Integer> overlayNrs; // the position of each overlay Product, by nr
+  private int nextPosition; // the position of the next inserted Product
+  private int size;
+
+  CatalogIndex(List<Product> catalog) {
+    int size = catalog.size();
+    products = catalog.toArray(new Product[size]);
+    alcohol = new double[size];
+    price = new double[size];
+    for (int i = 0; i < size; i++) {
+      alcohol[i] = products[i].alcohol();
+      price[i] = products[i].price();
+    }
+    alcoholOrder = IndexSort.sortedIndexes(alcohol);
+    sortedAlcohol = permute(alcohol, alcoholOrder);
+    priceOrder = IndexSort.sortedIndexes(price);
+    sortedPrice = permute(price, priceOrder);
+    names = new NameIndex(products);
+    productGroups = new Facet(products, Product::productGroup);
+    types = new Facet(products, Product::type);
+    nextPosition = size;
+    this.size = size;
+  }
+
+  /* The index base with changes: base's own structures, and an overlay of changed Products */
+  private CatalogIndex(CatalogIndex base, BitSet replaced, SortedMap<Integer, Product> changed,
+                       Map<Integer, Integer> overlayNrs, int nextPosition) {
+    products = base.products;
+    alcohol = base.alcohol;
+    price = base.price;
+    sortedAlcohol = base.sortedAlcohol;
+    alcoholOrder = base.alcoholOrder;
+    sortedPrice = base.sortedPrice;
+    priceOrder = base.priceOrder;
+    names = base.names;
+    productGroups = base.productGroups;
+    types = base.types;
+    nrIndex = base.nrIndex;
+    this.replaced = replaced;
+    this.overlay = new CatalogIndex(new ArrayList<>(changed.values()));
+    this.overlayPositions = new int[changed.size()];
+    int i = 0;
+    for (int position : changed.keySet()) {
+      overlayPositions[i++] = position;
+    }
+    this.overlayNrs = overlayNrs;
+    this.nextPosition = nextPosition;
+    this.size = products.length - replaced.cardinality() + overlay.size();
+  }
+
+  private static double[] permute(double[] values, int[] order) {
+    double[] permuted = new double[values.length];
+    for (int i = 0; i < order.length; i++) {
+      permuted[i] = values[order[i]];
+    }
+    return permuted;
+  }
+
+  /**
+   * Returns the number of Products in this index.
+   */
+  int size() {
+    return size;
+  }
+
+  /**
+   * Returns the Products which match a query, in catalog order.
+   */
+  List<Product> find(ProductQuery query) {
+    int[] hits = matches(query);
+    if (overlay == null) {
+      if (hits == null) {
+        return new ArrayList<>(Arrays.asList(products));
+      }
+      List<Product> result = new ArrayList<>(hits.length);
+      for (int position : hits) {
+        result.add(products[position]);
+      }
+      return result;
+    }
+    if (hits == null) {
+      hits = unchanged();
+    }
+    int[] changed = overlay.matches(query);
+    if (changed == null) {
+      changed = overlay.unchanged(); // that is, all of them
+    }
+    // Merge the two, by position
+    List<Product> result = new ArrayList<>(hits.length + changed.length);
+    int i = 0;
+    int j = 0;
+    while (i < hits.length || j < changed.length) {
+      if (j == changed.length || (i < hits.length && hits[i] < overlayPositions[changed[j]])) {
+        result.add(products[hits[i++]]);
+      } else {
+        result.add(overlay.products[changed[j++]]);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns all Products, in catalog order.
+   */
+  List<Product> products() {
+    return find(new ProductQuery.Builder().build());
+  }
+
+  /*
+   * The positions, in increasing order, of the Products of this index
+   * (not of its overlay) which match query and haven't been replaced -
+   * or null if that is all of them.
+   */
+  private int[] matches(ProductQuery query) {
+    int[] positions = positions(query);
+    BitSet groups = productGroups.selected(query.productGroups());
+    BitSet types = this.types.selected(query.types());
+    if (positions == null) {
+      // No name or ranges - only the bitsets, if any
+      BitSet selected = and(groups, types);
+      if (selected == null) {
+        return replaced == null ? null : unchanged();
+      }
+      if (replaced != null) {
+        selected = (BitSet)selected.clone(); // it may be the cached selection
+        selected.andNot(replaced);
+      }
+      return selected.stream().toArray();
+    }
+    int count = 0;
+    for (int position : positions) {
+      if ((groups == null || groups.get(position)) && (types == null || types.get(position)) &&
+          (replaced == null || !replaced.get(position))) {
+        positions[count++] = position;
+      }
+    }
+    return Arrays.copyOf(positions, count);
+  }
+
+  /* The positions of the Products which haven't been replaced */
+  private int[] unchanged() {
+    if (replaced == null) {
+      int[] all = new int[products.length];
+      for (int i = 0; i < all.length; i++) {
+        all[i] = i;
+      }
+      return all;
+    }
+    BitSet unchanged = new BitSet(products.length);
+    unchanged.set(0, products.length);
+    unchanged.andNot(replaced);
+    return unchanged.stream().toArray();
+  }
+
+  /**
+   * Returns an index with changes applied: Products with the numbers
+   * of changes.removed() are gone, and changes.products() are added,
+   * or replace those with the same number. This index is not changed.
+   */
+  CatalogIndex apply(CatalogChanges changes) {
+    if (changes.isFull()) {
+      return new CatalogIndex(changes.products());
+    }
+    if (changes.isEmpty()) {
+      return this;
+    }
+    NrIndex nrs = nrIndex();
+    BitSet replaced = this.replaced == null ? new BitSet(products.length) : (BitSet)this.replaced.clone();
+    SortedMap<Integer, Product> changed = new TreeMap<>();
+    Map<Integer, Integer> overlayNrs = new HashMap<>();
+    if (overlay != null) {
+      for (int i = 0; i < overlayPositions.length; i++) {
+        changed.put(overlayPositions[i], overlay.products[i]);
+      }
+      overlayNrs.putAll(this.overlayNrs);
+    }
+    int next = nextPosition;
+    for (int nr : changes.removed()) {
+      Integer position = overlayNrs.remove(nr);
+      if (position != null) {
+        changed.remove(position);
+      }
+      int basePosition = nrs.position(nr);
+      if (basePosition >= 0) {
+        replaced.set(basePosition);
+      }
+    }
+    for (Product product : changes.products()) {
+      Integer position = overlayNrs.get(product.nr());
+      if (position == null) {
+        int basePosition = nrs.position(product.nr());
+        if (basePosition >= 0) {
+          replaced.set(basePosition);
+          position = basePosition;
+        } else {
+          position = next++;
+        }
+        overlayNrs.put(product.nr(), position);
+      }
+      changed.put(position, product);
+    }
+    CatalogIndex applied = new CatalogIndex(this, replaced, changed, overlayNrs, next);
+    if (changed.size() > Math.max(MAX_OVERLAY, products.length / 16)) {
+      return new CatalogIndex(applied.products());
+    }
+    return applied;
+  }
+
+  private NrIndex nrIndex() {
+    NrIndex nrIndex = this.nrIndex;
+    if (nrIndex == null) {
+      nrIndex = new NrIndex(products);
+      this.nrIndex = nrIndex;
+    }
+    return nrIndex;
+  }
+
+  /**
+   * Returns the number of Products per product group and per type for
+   * a query. The count for a product group is that of the Products
+   * which match the query except for its product groups, and the other
+   * way around for types.
+   */
+  FacetCounts counts(ProductQuery query) {
+    FacetCounts counts = ownCounts(query);
+    if (overlay == null) {
+      return counts;
+    }
+    FacetCounts changed = overlay.counts(query);
+    return new FacetCounts(sum(counts.productGroups(), changed.productGroups()),
+                           sum(counts.types(), changed.types()));
+  }
+
+  private static Map<String, Integer> sum(Map<String, Integer> a, Map<String, Integer> b) {
+    Map<String, Integer> sum = new HashMap<>(a);
+    b.forEach((value, count) -> sum.merge(value, count, Integer::sum));
+    return sum;
+  }
+
+  /* The counts for the Products of this index (not of its overlay) which haven't been replaced */
+  private FacetCounts ownCounts(ProductQuery query) {
+    int[] positions = positions(query);
+    BitSet groups = productGroups.selected(query.productGroups());
+    BitSet types = this.types.selected(query.types());
+    int[] groupCounts = new int[productGroups.values.length];
+    int[] typeCounts = new int[this.types.values.length];
+    if (positions == null) {
+      // Every value's count is the size of its bitset, ANDed with the other facet's selection
+      for (int code = 0; code < groupCounts.length; code++) {
+        groupCounts[code] = count(productGroups.bits[code], types, replaced);
+      }
+      for (int code = 0; code < typeCounts.length; code++) {
+        typeCounts[code] = count(this.types.bits[code], groups, replaced);
+      }
+    } else {
+      for (int position : positions) {
+        if (replaced != null && replaced.get(position)) {
+          continue;
+        }
+        int group = productGroups.codes[position];
+        int type = this.types.codes[position];
+        if (group >= 0 && (types == null || types.get(position))) {
+          groupCounts[group]++;
+        }
+        if (type >= 0 && (groups == null || groups.get(position))) {
+          typeCounts[type]++;
+        }
+      }
+    }
+    return new FacetCounts(productGroups.counts(groupCounts), this.types.counts(typeCounts));
+  }
+
+  private static BitSet and(BitSet a, BitSet b) {
+    if (a == null || b == null) {
+      return a == null ? b : a;
+    }
+    BitSet and = (BitSet)a.clone();
+    and.and(b);
+    return and;
+  }
+
+  private static int count(BitSet bits, BitSet selected, BitSet excluded) {
+    if (selected == null && excluded == null) {
+      return bits.cardinality();
+    }
+    BitSet and = (BitSet)bits.clone();
+    if (selected != null) {
+      and.and(selected);
+    }
+    if (excluded != null) {
+      and.andNot(excluded);
+    }
+    return and.cardinality();
+  }
+
+  /*
+   * The positions, in increasing order, of the Products which match the
+   * name and ranges of query, or null if it has neither.
+   */
+  private int[] positions(ProductQuery query) {
+    if (query.name() != null) {
+      int[] hits = names.find(query.name());
+      if (hits != null) {
+        int count = 0;
+        for (int position : hits) {
+          if (alcohol[position] >= query.minAlcohol() && alcohol[position] <= query.maxAlcohol() &&
+              price[position] >= query.minPrice() && price[position] <= query.maxPrice()) {
+            hits[count++] = position;
+          }
+        }
+        return Arrays.copyOf(hits, count);
+      }
+    }
+    if (!query.hasRanges()) {
+      return null;
+    }
+    return positions(query.minAlcohol(), query.maxAlcohol(), query.minPrice(), query.maxPrice());
+  }
+
+  /* The positions of the Products within the ranges (all limits inclusive), in increasing order */
+  private int[] positions(double minAlcohol, double maxAlcohol, double minPrice, double maxPrice) {
+    int alcoholFrom = IndexSort.lowerBound(sortedAlcohol, minAlcohol);
+    int alcoholTo = IndexSort.upperBound(sortedAlcohol, maxAlcohol);
+    int priceFrom = IndexSort.lowerBound(sortedPrice, minPrice);
+    int priceTo = IndexSort.upperBound(sortedPrice, maxPrice);
+    if (alcoholFrom >= alcoholTo || priceFrom >= priceTo) {
+      return new int[0];
+    }
+    int[] hits;
+    int count = 0;
+    if (Math.min(alcoholTo - alcoholFrom, priceTo - priceFrom) > products.length / 8) {
+      // Most Products are in range - scanning the columns is cheaper than sorting the hits
+      return ColumnScan.rows(new ColumnScan.Filter(products.length)
+                             .range(alcohol, minAlcohol, maxAlcohol)
+                             .range(price, minPrice, maxPrice)
+                             .select());
+    }
+    if (alcoholTo - alcoholFrom <= priceTo - priceFrom) {
+      hits = new int[alcoholTo - alcoholFrom];
+      for (int i = alcoholFrom; i < alcoholTo; i++) {
+        int position = alcoholOrder[i];
+        if (price[position] >= minPrice && price[position] <= maxPrice) {
+          hits[count++] = position;
+        }
+      }
+    } else {
+      hits = new int[priceTo - priceFrom];
+      for (int i = priceFrom; i < priceTo; i++) {
+        int position = priceOrder[i];
+        if (alcohol[position] >= minAlcohol && alcohol[position] <= maxAlcohol) {
+          hits[count++] = position;
+        }
+      }
+    }
+    Arrays.sort(hits, 0, count);
+    return Arrays.copyOf(hits, count);
+  }
+
+  /**
+   * The distinct values of product group (or type), with a bitset of
+   * the positions of the Products with each value, and the code of each
+   * Product's value.
+   */
+  private static class Facet {
+    String[] values;
+    BitSet[] bits; // bits[code] has the positions of the Products with values[code]
+    int[] codes; // codes[position] is the code of that Product's value, or -1 for null
+    Map<String, Integer> codeOf = new HashMap<>();
+    // The last selection, since most new queries only change some other param
+    private volatile Selection last;
+
+    Facet(Product[] products, Function<Product, String> value) {
+      codes = new int[products.length];
+      List<String> values = new ArrayList<>();
+      List<BitSet> bits = new ArrayList<>();
+      for (int i = 0; i < products.length; i++) {
+        String v = value.apply(products[i]);
+        if (v == null) {
+          codes[i] = -1;
+          continue;
+        }
+        Integer code = codeOf.get(v);
+        if (code == null) {
+          code = values.size();
+          codeOf.put(v, code);
+          values.add(v);
+          bits.add(new BitSet(products.length));
+        }
+        codes[i] = code;
+        bits.get(code).set(i);
+      }
+      this.values = values.toArray(new String[0]);
+      this.bits = bits.toArray(new BitSet[0]);
+    }
+
+    /* The positions of Products with any of the selected values, or null if all are selected */
+    BitSet selected(Set<String> selectedValues) {
+      if (selectedValues == null) {
+        return null;
+      }
+      Selection last = this.last;
+      if (last != null && last.values.equals(selectedValues)) {
+        return last.bits;
+      }
+      BitSet selected = new BitSet(codes.length);
+      for (String v : selectedValues) {
+        Integer code = codeOf.get(v);
+        if (code != null) {
+          selected.or(bits[code]);
+        }
+      }
+      this.last = new Selection(selectedValues, selected);
+      return selected;
+    }
+
+    Map<String, Integer> counts(int[] counts) {
+      Map<String, Integer> map = new HashMap<>();
+      for (int code = 0; code < counts.length; code++) {
+        map.put(values[code], counts[code]);
+      }
+      return map;
+    }
+  }
+
+  /**
+   * The positions of the Products by nr, for applying changes.
+   */
+  private static class NrIndex {
+    int[] sortedNrs;
+    int[] positions; // positions[i] is the position of the Product with sortedNrs[i]
+
+    NrIndex(Product[] products) {
+      int[] nrs = new int[products.length];
+      for (int i = 0; i < nrs.length; i++) {
+        nrs[i] = products[i].nr();
+      }
+      positions = IndexSort.sortedIndexes(nrs);
+      sortedNrs = new int[nrs.length];
+      for (int i = 0; i < positions.length; i++) {
+        sortedNrs[i] = nrs[positions[i]];
+      }
+    }
+
+    /* The position of the Product with nr, or -1 if there is none */
+    int position(int nr) {
+      int i = Arrays.binarySearch(sortedNrs, nr);
+      return i >= 0 ? positions[i] : -1;
+    }
+  }
+
+  // The bits are never changed once computed, so they can be shared between threads
+  private static class Selection {
+    Set<String> values;
+    BitSet bits;
+
+    Selection(Set<String> values, BitSet bits) {
+      this.values = values;
+      this.bits = bits;
+    }
+  }
+}
@@ -0,0 +1,147 @@
+package se.itu.systemet.rest;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import se.itu.systemet.domain.Collation;
+import se.itu.systemet.domain.Product;
+
+/**
+ * <p>The number of Products for each product group and each type,
+ * given the params of a Query - for showing next to the values the
+ * user can filter on.</p>
+ *
+ * <p>The params product_group and type take one or more values
+ * separated by SEPARATOR, e.g. <code>product_group=Öl|Cider</code>,
+ * and a Product matches if it has any of them. The count for a product
+ * group is the number of Products which match all the other params,
+ * i.e. the number of Products the user would get by also selecting
+ * that group. So selecting a group doesn't make the counts of the
+ * other groups drop to zero.</p>
+ *
+ * <p>The values are ordered like Product names, in Swedish.</p>
+ */
+public class FacetCounts {
+
+  /**
+   * The key of the param for filtering on product groups.
+   */
+  public static final String PRODUCT_GROUP = "product_group";
+  /**
+   * The key of the param for filtering on types.
+   */
+  public static final String TYPE = "type";
+  /**
+   * Separates the values of a product_group or type param.
+   */
+  public static final String SEPARATOR = "|";
+
+  private static final Comparator<String> ORDER =
+    Comparator.comparing(Collation::key).thenComparing(Comparator.naturalOrder());
+
+  private Map<String, Integer> productGroups;
+  private Map<String, Integer> types;
+
+  /**
+   * Creates new FacetCounts.
+   * @param productGroups The number of Products per product group
+   * @param types The number of Products per type
+   */
+  public FacetCounts(Map<String, Integer> productGroups, Map<String, Integer> types) {
+    this.productGroups = sorted(productGroups);
+    this.types = sorted(types);
+  }
+
+  private static Map<String, Integer> sorted(Map<String, Integer> counts) {
+    Map<String, Integer> sorted = new TreeMap<>(ORDER);
+    sorted.putAll(counts);
+    return Collections.unmodifiableMap(sorted);
+  }
+
+  /**
+   * Returns the number of Products per product group.
+   * @return The number of Products per product group, in order
+   */
+  public Map<String, Integer> productGroups() {
+    return productGroups;
+  }
+
+  /**
+   * Returns the number of Products per type.
+   * @return The number of Products per type, in order
+   */
+  public Map<String, Integer> types() {
+    return types;
+  }
+
+  /**
+   * Returns the value of a product_group or type param which matches
+   * any of the specified values.
+   * @param values The values to match
+   * @return The values, separated by SEPARATOR
+   */
+  public static String join(Collection<String> values) {
+    return String.join(SEPARATOR, values);
+  }
+
+  /**
+   * Returns the values of a product_group or type param, or null for
+   * no param (which matches all values).
+   */
+  static Set<String> split(String value) {
+    if (value == null) {
+      return null;
+    }
+    Set<String> values = new LinkedHashSet<>();
+    int from = 0;
+    while (from <= value.length()) {
+      int to = value.indexOf(SEPARATOR, from);
+      if (to < 0) {
+        to = value.length();
+      }
+      String single = value.substring(from, to).trim();
+      if (!single.isEmpty()) {
+        values.add(single);
+      }
+      from = to + SEPARATOR.length();
+    }
+    return values;
+  }
+
+  /**
+   * Counts the product groups and types of Products which match all
+   * params of a Query except product_group and type.
+   */
+  static FacetCounts count(List<Product> products, Query query) {
+    Set<String> groups = split(query.get(PRODUCT_GROUP));
+    Set<String> types = split(query.get(TYPE));
+    Map<String, Integer> groupCounts = new TreeMap<>(ORDER);
+    Map<String, Integer> typeCounts = new TreeMap<>(ORDER);
+    for (Product product : products) {
+      boolean groupMatches = groups == null || groups.contains(product.productGroup());
+      boolean typeMatches = types == null || types.contains(product.type());
+      if (product.productGroup() != null) {
+        groupCounts.merge(product.productGroup(), typeMatches ? 1 : 0, Integer::sum);
+      }
+      if (product.type() != null) {
+        typeCounts.merge(product.type(), groupMatches ? 1 : 0, Integer::sum);
+      }
+    }
+    return new FacetCounts(groupCounts, typeCounts);
+  }
+
+  /**
+   * Returns these counts as a String, for debugging.
+   * @return These counts as a String
+   */
+  @Override
+  public String toString() {
+    return "product groups " + productGroups + ", types " + types;
+  }
+}
@@ -0,0 +1,272 @@
+package se.itu.systemet.rest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import se.itu.systemet.domain.Product;
+import se.itu.systemet.metrics.Counter;
+import se.itu.systemet.metrics.Metrics;
+
+/**
+ * <p>An implementation of ApiAccess which talks to a REST API over HTTP.</p>
+ *
+ * <p>The Query is sent as GET parameters to the base URL, e.g.
+ *<pre>
+ * http://localhost:8080/search/products/all?min_price=100&amp;max_alcohol=5
+ *</pre>
+ * and the response is expected to be a JSON array of product objects:
+ *<pre>
+ * [ { "name": "Renat", "price": 209.0, "alcohol": 37.5, "volume": 700,
+ *     "nr": 101, "product_group": "Okryddad sprit", "type": "Vodka" }, ... ]
+ *</pre>
+ * which is decoded by a ProductDecoder, one product at a time.</p>
+ *
+ * <p>All instances share one HttpClient, which keeps its connections
+ * alive and pooled (and uses HTTP/2 when the server supports it), so
+ * the many calls issued while the user types reuse the same connections.</p>
+ *
+ * <p>Queries are checked before they are sent (see ProductQuery): a
+ * param with a value which can't be used is rejected with an
+ * InvalidQueryException, a Query no Product can match (like
+ * min_price=200&amp;max_price=100) gives no Products without a request,
+ * and numbers are sent normalized, so min_price=1,5 is sent as 1.5.</p>
+ *
+ * <p>A request which gets no response within the timeout fails with
+ * an ApiAccessException, and its exchange is ended - so a server which
+ * stops answering doesn't hold connections (or callers) forever.</p>
+ */
+public class HttpApiAccess implements ApiAccess {
+
+  private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(5);
+
+  /**
+   * The number of milliseconds to wait for a response, unless another
+   * timeout is given when the HttpApiAccess is created.
+   */
+  public static final long DEFAULT_TIMEOUT_MILLIS = 30_000;
+
+  // One client for the whole application - it owns the connection pool
+  private static final HttpClient CLIENT = HttpClient.newBuilder()
+    .version(HttpClient.Version.HTTP_2)
+    .connectTimeout(CONNECT_TIMEOUT)
+    .followRedirects(HttpClient.Redirect.NORMAL)
+    .build();
+
+  private URI baseUri;
+  private Duration timeout;
+
+  /**
+   * Creates a new HttpApiAccess for the API at the specified base URL.
+   * @param baseUrl The URL (without query string) of the REST API
+   */
+  public HttpApiAccess(String baseUrl) {
+    this(baseUrl, DEFAULT_TIMEOUT_MILLIS);
+  }
+
+  /**
+   * Creates a new HttpApiAccess for the API at the specified base URL,
+   * which waits at most timeoutMillis for a response.
+   * @param baseUrl The URL (without query string) of the REST API
+   * @param timeoutMillis The number of milliseconds to wait for a response
+   */
+  public HttpApiAccess(String baseUrl, long timeoutMillis) {
+    this.baseUri = URI.create(baseUrl);
+    this.timeout = Duration.ofMillis(timeoutMillis);
+  }
+
+  /**
+   * Returns a List&lt;Product&gt; using a Query.
+   * @param query The Query used for fetching Products from the API.
+   * @return A List&lt;Product&gt; using the specified Query.
+   * @throws ApiAccessException if the API could not be reached or
+   * answered with something other than a JSON array of products
+   * @throws InvalidQueryException if a param has a value which can't be used
+   */
+  public List<Product> fetch(Query query) {
+    Query checked = checked(query);
+    if (checked == null) {
+      return new ArrayList<>();
+    }
+    return ProductDecoder.decodeAll(send(checked, HttpResponse.BodyHandlers.ofInputStream()).body());
+  }
+
+  /**
+   * Returns the Products for a Query as a Stream, parsing each Product
+   * as soon as it has arrived.
+   * @param query The Query used for fetching Products from the API.
+   * @return A Stream&lt;Product&gt; using the specified Query, which
+   * must be closed to release the connection.
+   * @throws ApiAccessException if the API could not be reached or
+   * answered with something other than a JSON array of products
+   * @throws InvalidQueryException if a param has a value which can't be used
+   */
+  @Override
+  public Stream<Product> stream(Query query) {
+    Query checked = checked(query);
+    if (checked == null) {
+      return Stream.empty();
+    }
+    ProductDecoder decoder = new ProductDecoder(send(checked, HttpResponse.BodyHandlers.ofInputStream()).body());
+    Spliterator<Product> products =
+      new Spliterators.AbstractSpliterator<Product>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+        @Override
+        public boolean tryAdvance(Consumer<? super Product> action) {
+          Product product = decoder.next();
+          if (product == null) {
+            return false;
+          }
+          action.accept(product);
+          return true;
+        }
+      };
+    return StreamSupport.stream(products, false).onClose(decoder::close);
+  }
+
+  /**
+   * Fetches the Products for a Query without blocking the calling
+   * thread. The request is sent with the asynchronous API of the shared
+   * HttpClient, so the requests of fetchAll() go out at the same time -
+   * as streams on one connection when the server speaks HTTP/2, or on
+   * pooled connections otherwise. Responses are decoded on a pool of
+   * daemon threads.
+   * @param query The Query used for fetching Products from the API.
+   * @return A CompletableFuture which completes with the Products.
+   */
+  @Override
+  public CompletableFuture<List<Product>> fetchAsync(Query query) {
+    Query checked;
+    try {
+      checked = checked(query);
+    } catch (InvalidQueryException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+    if (checked == null) {
+      return CompletableFuture.completedFuture(new ArrayList<>());
+    }
+    Metrics.count(Counter.REQUESTS);
+    return CLIENT.sendAsync(request(checked), HttpResponse.BodyHandlers.ofInputStream())
+      .handleAsync((response, e) -> {
+          if (e != null) {
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            throw new ApiAccessException("Could not fetch products from " + baseUri + ": " +
+                                         cause.getMessage(), cause);
+          }
+          return ProductDecoder.decodeAll(checkStatus(response).body());
+        }, ApiExecutor.POOL);
+  }
+
+  /**
+   * Returns the changes to the catalog since a version of it, as
+   * described in CatalogChanges. An API which doesn't know about
+   * versions sends the whole catalog.
+   * @param version The version of the catalog we have, or
+   * CatalogChanges.UNKNOWN_VERSION for the whole catalog.
+   * @return The changes since version.
+   * @throws ApiAccessException if the API could not be reached or
+   * answered with something other than a JSON array of products
+   */
+  @Override
+  public CatalogChanges changesSince(long version) {
+    Query query = QueryFactory.getQuery();
+    if (version != CatalogChanges.UNKNOWN_VERSION) {
+      query.addParam(new Param(CatalogChanges.CHANGED_SINCE, Long.toString(version)));
+    }
+    HttpResponse<InputStream> response = send(query, HttpResponse.BodyHandlers.ofInputStream());
+    List<Product> products = ProductDecoder.decodeAll(response.body());
+    HttpHeaders headers = response.headers();
+    long newVersion = headers.firstValueAsLong(CatalogChanges.VERSION_HEADER).orElse(CatalogChanges.UNKNOWN_VERSION);
+    boolean full = version == CatalogChanges.UNKNOWN_VERSION || newVersion == CatalogChanges.UNKNOWN_VERSION ||
+      "true".equals(headers.firstValue(CatalogChanges.FULL_HEADER).orElse(null));
+    return new CatalogChanges(newVersion, full, products, numbers(headers.firstValue(CatalogChanges.REMOVED_HEADER).orElse("")));
+  }
+
+  /* The comma separated numbers in text */
+  private static int[] numbers(String text) {
+    if (text.isBlank()) {
+      return new int[0];
+    }
+    String[] parts = text.split(",");
+    int[] numbers = new int[parts.length];
+    for (int i = 0; i < parts.length; i++) {
+      try {
+        numbers[i] = Integer.parseInt(parts[i].trim());
+      } catch (NumberFormatException e) {
+        throw new MalformedResponseException("Not a product number in " + CatalogChanges.REMOVED_HEADER + ": " + parts[i]);
+      }
+    }
+    return numbers;
+  }
+
+  /* The Query to send, normalized if we know all its params, or null if no Product can match it */
+  private static Query checked(Query query) {
+    ProductQuery productQuery = ProductQuery.of(query);
+    if (productQuery == null) {
+      return query;
+    }
+    return productQuery.canMatch() ? productQuery.toQuery() : null;
+  }
+
+  private <T> HttpResponse<T> send(Query query, HttpResponse.BodyHandler<T> handler) {
+    HttpResponse<T> response;
+    Metrics.count(Counter.REQUESTS);
+    try {
+      response = CLIENT.send(request(query), handler);
+    } catch (IOException e) {
+      throw new ApiAccessException("Could not fetch products from " + baseUri + ": " + e.getMessage(), e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ApiAccessException("Interrupted while fetching products from " + baseUri, e);
+    }
+    return checkStatus(response);
+  }
+
+  private static <T> HttpResponse<T> checkStatus(HttpResponse<T> response) {
+    if (response.statusCode() != 200) {
+      if (response.body() instanceof InputStream) {
+        try {
+          ((InputStream)response.body()).close();
+        } catch (IOException ignore) {}
+      }
+      throw new ApiAccessException("Unexpected HTTP status " + response.statusCode() +
+                                   " from " + response.uri(), response.statusCode());
+    }
+    return response;
+  }
+
+  HttpRequest request(Query query) {
+    return HttpRequest.newBuilder(uri(query))
+      .timeout(timeout)
+      .header("Accept", "application/json")
+      .GET()
+      .build();
+  }
+
+  URI uri(Query query) {
+    // Each key and value is encoded, so that e.g. name=Gin & Tonic+Co stays one param
+    String queryString = query instanceof RestQuery ? ((RestQuery)query).encodedQueryString()
+      : query.toQueryString();
+    if (queryString.isEmpty()) {
+      return baseUri;
+    }
+    try {
+      return URI.create(baseUri + (baseUri.getRawQuery() == null ? "?" : "&") + queryString);
+    } catch (IllegalArgumentException e) {
+      throw new ApiAccessException("Invalid query: " + queryString, e);
+    }
+  }
+}
@@ -0,0 +1,31 @@
+package se.itu.systemet.rest;
+
+/**
+ * Signals that a param of a query has a value which can't be used,
+ * for instance a price which isn't a number. Thrown before any request
+ * is sent, so the user can be told right away which input is wrong.
+ */
+public class InvalidQueryException extends IllegalArgumentException {
+
+  private static final long serialVersionUID = 1L;
+
+  private String key;
+
+  /**
+   * Creates a new InvalidQueryException.
+   * @param key The key of the param with the invalid value
+   * @param message A description of what is wrong with the value
+   */
+  public InvalidQueryException(String key, String message) {
+    super(key + ": " + message);
+    this.key = key;
+  }
+
+  /**
+   * Returns the key of the param with the invalid value.
+   * @return The key of the param with the invalid value
+   */
+  public String key() {
+    return key;
+  }
+}
@@ -0,0 +1,19 @@
+package se.itu.systemet.rest;
+
+/**
+ * Signals that the API answered, but with something we couldn't parse,
+ * for instance JSON which isn't an array of products. Asking again
+ * gives the same answer, so it isn't retried.
+ */
+public class MalformedResponseException extends ApiAccessException {
+
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * Creates a new MalformedResponseException with the specified message.
+   * @param message A description of what couldn't be parsed
+   */
+  public MalformedResponseException(String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,273 @@
+package se.itu.systemet.rest;
+
+import java.util.Arrays;
+
+import se.itu.systemet.domain.Collation;
+import se.itu.systemet.domain.Product;
+
+/**
+ * A trigram index over the names of a catalog of Products, for finding
+ * the Products whose names contain (or start with) some text.
+ *
+ * Names are folded with Collation, so the search is case insensitive
+ * and "chateau" finds "Château". Each name is split into all its runs
+ * of three characters (trigrams), after two START characters which
+ * mark the start of the name. For each trigram we keep the positions
+ * of the names it occurs in, in increasing order, compressed as the
+ * differences between positions, each in as few bytes as possible (7
+ * bits per byte, the high bit set on all but the last byte).
+ *
+ * A search for "brew" looks up the lists for "bre" and "rew", walks
+ * the shortest list and keeps the positions which are in all others,
+ * and then checks that the name really contains "brew". A prefix search
+ * works the same way, with the START characters in front of the text,
+ * so even a single letter is answered from the index.
+ */
+class NameIndex {
+
+  private static final char START = '\u0001';
+  private static final int EMPTY = -1;
+
+  private String[] keys; // the folded name of each Product
+  private long[] table; // open addressing hash table of trigrams
+  private int[] ids; // ids[slot] is the id of the trigram in table[slot]
+  private int[] counts; // counts[id] is the number of positions of trigram id
+  private int[] starts; // starts[id] is where the positions of trigram id start in postings
+  private byte[] postings;
+
+  NameIndex(Product[] products) {
+    int size = products.length;
+    keys = new String[size];
+    int grams = 0;
+    for (int i = 0; i < size; i++) {
+      keys[i] = products[i].name() == null ? "" : products[i].nameKey();
+      grams += keys[i].length();
+    }
+    table = new long[1024];
+    ids = new int[table.length];
+    Arrays.fill(ids, EMPTY);
+
+    // First the trigram ids of every name, and how many names each is in
+    int[] gramIds = new int[grams];
+    int[] last = new int[64]; // last[id] is the last position counted for id, plus one
+    int distinct = 0;
+    int g = 0;
+    counts = new int[64];
+    for (int i = 0; i < size; i++) {
+      String key = keys[i];
+      for (int j = 0; j < key.length(); j++) {
+        long gram = trigram(key, j - 2);
+        int slot = slot(gram);
+        if (ids[slot] == EMPTY) {
+          table[slot] = gram;
+          ids[slot] = distinct++;
+          if (distinct > counts.length) {
+            counts = Arrays.copyOf(counts, counts.length * 2);
+            last = Arrays.copyOf(last, last.length * 2);
+          }
+          if (distinct * 2 > table.length) {
+            grow();
+            slot = slot(gram);
+          }
+        }
+        int id = ids[slot];
+        gramIds[g++] = id;
+        if (last[id] != i + 1) {
+          last[id] = i + 1;
+          counts[id]++;
+        }
+      }
+    }
+
+    // Then the positions of each trigram, compressed
+    int[] offsets = new int[distinct + 1];
+    for (int id = 0; id < distinct; id++) {
+      offsets[id + 1] = offsets[id] + counts[id];
+    }
+    int[] positions = new int[offsets[distinct]];
+    int[] fill = Arrays.copyOf(offsets, distinct);
+    Arrays.fill(last, 0);
+    g = 0;
+    for (int i = 0; i < size; i++) {
+      for (int j = 0; j < keys[i].length(); j++) {
+        int id = gramIds[g++];
+        if (last[id] != i + 1) {
+          last[id] = i + 1;
+          positions[fill[id]++] = i;
+        }
+      }
+    }
+    counts = Arrays.copyOf(counts, distinct);
+    starts = new int[distinct];
+    byte[] bytes = new byte[positions.length * 2 + 16];
+    int length = 0;
+    for (int id = 0; id < distinct; id++) {
+      starts[id] = length;
+      int previous = 0;
+      for (int k = offsets[id]; k < offsets[id + 1]; k++) {
+        if (length + 5 > bytes.length) {
+          bytes = Arrays.copyOf(bytes, bytes.length * 2);
+        }
+        int delta = positions[k] - previous;
+        previous = positions[k];
+        while (delta >= 0x80) {
+          bytes[length++] = (byte)(delta | 0x80);
+          delta >>>= 7;
+        }
+        bytes[length++] = (byte)delta;
+      }
+    }
+    postings = Arrays.copyOf(bytes, length);
+  }
+
+  /* Doubles the size of the hash table, which is kept at most half full */
+  private void grow() {
+    long[] oldTable = table;
+    int[] oldIds = ids;
+    table = new long[oldTable.length * 2];
+    ids = new int[table.length];
+    Arrays.fill(ids, EMPTY);
+    for (int i = 0; i < oldTable.length; i++) {
+      if (oldIds[i] != EMPTY) {
+        int slot = slot(oldTable[i]);
+        table[slot] = oldTable[i];
+        ids[slot] = oldIds[i];
+      }
+    }
+  }
+
+  /* The trigram starting at index from of key, where -1 and -2 are START */
+  private static long trigram(String key, int from) {
+    long gram = 0;
+    for (int i = from; i < from + 3; i++) {
+      gram = gram << 16 | (i < 0 ? START : key.charAt(i));
+    }
+    return gram;
+  }
+
+  /* The slot of gram in table, or the empty slot where it belongs */
+  private int slot(long gram) {
+    int mask = table.length - 1;
+    long h = gram * 0x9E3779B97F4A7C15L;
+    int slot = (int)(h >>> 40) & mask;
+    while (ids[slot] != EMPTY && table[slot] != gram) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  /**
+   * Returns the positions, in increasing order, of the Products whose
+   * names contain text - or start with it, if text ends with a '*'.
+   * Returns null if text (without the '*') is empty, i.e. all Products
+   * match.
+   */
+  int[] find(String text) {
+    String key = Collation.key(text.trim());
+    boolean prefix = key.endsWith("*");
+    if (prefix) {
+      key = key.substring(0, key.length() - 1);
+    }
+    if (key.isEmpty()) {
+      return null;
+    }
+    String pattern = prefix ? "" + START + START + key : key;
+    if (pattern.length() < 3) {
+      return scan(key); // too short to have a trigram
+    }
+
+    // The ids of the trigrams of pattern; we start from the one in fewest names
+    int[] gramIds = new int[pattern.length() - 2];
+    for (int j = 0; j < gramIds.length; j++) {
+      int id = ids[slot(trigram(pattern, j))];
+      if (id == EMPTY) {
+        return new int[0];
+      }
+      gramIds[j] = id;
+    }
+    int first = 0;
+    for (int j = 1; j < gramIds.length; j++) {
+      if (counts[gramIds[j]] < counts[gramIds[first]]) {
+        first = j;
+      }
+    }
+    int[] candidates = decode(gramIds[first]);
+    int count = candidates.length;
+    for (int j = 0; j < gramIds.length && count > 0; j++) {
+      if (j != first) {
+        count = intersect(candidates, count, gramIds[j]);
+      }
+    }
+
+    // The trigrams may be in the name in another order, so check
+    int matches = 0;
+    for (int k = 0; k < count; k++) {
+      String name = keys[candidates[k]];
+      if (prefix ? name.startsWith(key) : name.contains(key)) {
+        candidates[matches++] = candidates[k];
+      }
+    }
+    return Arrays.copyOf(candidates, matches);
+  }
+
+  private int[] scan(String key) {
+    int[] matches = new int[16];
+    int count = 0;
+    for (int i = 0; i < keys.length; i++) {
+      if (keys[i].contains(key)) {
+        if (count == matches.length) {
+          matches = Arrays.copyOf(matches, count * 2);
+        }
+        matches[count++] = i;
+      }
+    }
+    return Arrays.copyOf(matches, count);
+  }
+
+  private int[] decode(int id) {
+    int[] positions = new int[counts[id]];
+    int at = starts[id];
+    int position = 0;
+    for (int k = 0; k < positions.length; k++) {
+      int delta = 0;
+      int shift = 0;
+      byte b;
+      do {
+        b = postings[at++];
+        delta |= (b & 0x7F) << shift;
+        shift += 7;
+      } while (b < 0);
+      position += delta;
+      positions[k] = position;
+    }
+    return positions;
+  }
+
+  /* Keeps the first count of candidates which are in the list of id; returns how many */
+  private int intersect(int[] candidates, int count, int id) {
+    int at = starts[id];
+    int position = 0;
+    int left = counts[id];
+    int kept = 0;
+    for (int k = 0; k < count && left > 0; ) {
+      int delta = 0;
+      int shift = 0;
+      byte b;
+      do {
+        b = postings[at++];
+        delta |= (b & 0x7F) << shift;
+        shift += 7;
+      } while (b < 0);
+      position += delta;
+      left--;
+      while (k < count && candidates[k] < position) {
+        k++;
+      }
+      if (k < count && candidates[k] == position) {
+        candidates[kept++] = position;
+        k++;
+      }
+    }
+    return kept;
+  }
+}
@@ -0,0 +1,472 @@
+package se.itu.systemet.rest;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import se.itu.systemet.domain.Interner;
+import se.itu.systemet.domain.Product;
+import se.itu.systemet.metrics.Metrics;
+import se.itu.systemet.metrics.Stage;
+
+/**
+ * <p>Decodes a JSON array of products, like
+ *<pre>
+ * [ { "name": "Renat", "price": 209.0, "alcohol": 37.5, "volume": 700,
+ *     "nr": 101, "product_group": "Okryddad sprit", "type": "Vodka" }, ... ]
+ *</pre>
+ * one Product at a time, straight from the characters of the response.</p>
+ *
+ * <p>Unlike parsing with org.json, no JSONArray or JSONObject is ever
+ * built: each field is fed directly into a Product.Builder, numbers are
+ * parsed from a reusable buffer, and fields we don't know are skipped.
+ * Numeric fields may also be given as strings, e.g. "price": "16.90".</p>
+ *
+ * <p>Product groups and types repeat all through a catalog, so they
+ * are looked up in a small table of the values already seen, and a new
+ * String is only created (and interned) the first time a value occurs.</p>
+ *
+ * <p>Typical use:
+ *<pre>
+ * try (ProductDecoder decoder = new ProductDecoder(in)) {
+ *   Product product;
+ *   while ((product = decoder.next()) != null) {
+ *     ...
+ *   }
+ * }
+ *</pre>
+ * </p>
+ */
+public class ProductDecoder implements Closeable {
+
+  private static final int NAME = 0;
+  private static final int PRICE = 1;
+  private static final int ALCOHOL = 2;
+  private static final int VOLUME = 3;
+  private static final int NR = 4;
+  private static final int PRODUCT_GROUP = 5;
+  private static final int TYPE = 6;
+  private static final int UNKNOWN = -1;
+
+  // Size of the table of product groups and types seen (a power of two)
+  private static final int SEEN_SIZE = 1024;
+
+  // Exact powers of ten, for the fast path of number parsing
+  private static final double[] POWERS_OF_TEN = {
+    1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+    1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+  };
+
+  private Reader reader;
+  private char[] buffer = new char[8192];
+  private int position;
+  private int limit;
+  private char[] token = new char[64]; // keys and numbers are read into this
+  private int tokenLength;
+  private StringBuilder text = new StringBuilder();
+  private String[] seen = new String[SEEN_SIZE]; // product groups and types, by hash
+  private boolean started;
+  private boolean finished;
+  private long startNanos; // for the DECODE stage of Metrics
+
+  /**
+   * Creates a new ProductDecoder reading UTF-8 JSON from an InputStream.
+   * @param in The InputStream to read from
+   */
+  public ProductDecoder(InputStream in) {
+    this(new InputStreamReader(in, StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Creates a new ProductDecoder reading JSON from a Reader.
+   * @param reader The Reader to read from
+   */
+  public ProductDecoder(Reader reader) {
+    this.reader = reader;
+  }
+
+  /**
+   * Decodes all Products from an InputStream and closes it.
+   * @param in The InputStream to read from
+   * @return All the Products in the InputStream
+   * @throws ApiAccessException if the input could not be read or is
+   * not a JSON array of products
+   */
+  public static List<Product> decodeAll(InputStream in) {
+    List<Product> products = new ArrayList<>();
+    try (ProductDecoder decoder = new ProductDecoder(in)) {
+      Product product;
+      while ((product = decoder.next()) != null) {
+        products.add(product);
+      }
+    }
+    return products;
+  }
+
+  /**
+   * Returns the next Product, or null after the last one.
+   * @return The next Product, or null if there are no more
+   * @throws ApiAccessException if the input could not be read or is
+   * not a JSON array of products
+   */
+  public Product next() {
+    if (finished) {
+      return null;
+    }
+    if (!started) {
+      startNanos = Metrics.start();
+    }
+    char c = nextClean();
+    if (!started) {
+      if (c != '[') {
+        throw syntaxError("A JSON array must start with '['");
+      }
+      started = true;
+      c = nextClean();
+      if (c == ']') {
+        return end();
+      }
+    } else if (c == ']') {
+      return end();
+    } else if (c == ',') {
+      c = nextClean();
+    } else {
+      throw syntaxError("Expected ',' or ']'");
+    }
+    if (c != '{') {
+      throw syntaxError("Expected a product object");
+    }
+    return readProduct();
+  }
+
+  private Product readProduct() {
+    Product.Builder builder = new Product.Builder();
+    char c = nextClean();
+    if (c == '}') {
+      return builder.build();
+    }
+    while (true) {
+      if (c != '"') {
+        throw syntaxError("Expected a key");
+      }
+      readToken('"');
+      int field = field();
+      if (nextClean() != ':') {
+        throw syntaxError("Expected ':'");
+      }
+      switch (field) {
+        case NAME: builder.name(readString()); break;
+        case PRICE: builder.price(readNumber()); break;
+        case ALCOHOL: builder.alcohol(readNumber()); break;
+        case VOLUME: builder.volume((int)readNumber()); break;
+        case NR: builder.nr((int)readNumber()); break;
+        case PRODUCT_GROUP: builder.productGroup(readInternedString()); break;
+        case TYPE: builder.type(readInternedString()); break;
+        default: skipValue();
+      }
+      c = nextClean();
+      if (c == '}') {
+        return builder.build();
+      }
+      if (c != ',') {
+        throw syntaxError("Expected ',' or '}'");
+      }
+      c = nextClean();
+    }
+  }
+
+  /* Which field the key in token is */
+  private int field() {
+    switch (tokenLength) {
+      case 2: return tokenIs("nr") ? NR : UNKNOWN;
+      case 4: return tokenIs("name") ? NAME : tokenIs("type") ? TYPE : UNKNOWN;
+      case 5: return tokenIs("price") ? PRICE : UNKNOWN;
+      case 6: return tokenIs("volume") ? VOLUME : UNKNOWN;
+      case 7: return tokenIs("alcohol") ? ALCOHOL : UNKNOWN;
+      case 13: return tokenIs("product_group") ? PRODUCT_GROUP : UNKNOWN;
+      default: return UNKNOWN;
+    }
+  }
+
+  private boolean tokenIs(String key) {
+    for (int i = 0; i < tokenLength; i++) {
+      if (token[i] != key.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /* Reads a string value, or null */
+  private String readString() {
+    char c = nextClean();
+    if (c == 'n') {
+      skipLiteral();
+      return null;
+    }
+    if (c != '"') {
+      // Be lenient - a number (or boolean) where we expected a string
+      position--;
+      readToken((char)0);
+      return new String(token, 0, tokenLength);
+    }
+    text.setLength(0);
+    while (true) {
+      c = nextChar();
+      if (c == '"') {
+        return text.toString();
+      }
+      text.append(c == '\\' ? escaped() : c);
+    }
+  }
+
+  /*
+   * Reads a string value, or null, which is one of few distinct values.
+   * The value is read into token and looked up in seen (open addressing,
+   * linear probing), so a value seen before allocates nothing.
+   */
+  private String readInternedString() {
+    char c = nextClean();
+    if (c == 'n') {
+      skipLiteral();
+      return null;
+    }
+    if (c == '"') {
+      readToken('"');
+    } else {
+      position--;
+      readToken((char)0);
+    }
+    int hash = 0;
+    for (int i = 0; i < tokenLength; i++) {
+      hash = 31 * hash + token[i];
+    }
+    int mask = SEEN_SIZE - 1;
+    int slot = (hash ^ (hash >>> 16)) & mask;
+    for (int probes = 0; probes < SEEN_SIZE; probes++) {
+      String value = seen[slot];
+      if (value == null) {
+        value = Interner.intern(new String(token, 0, tokenLength));
+        seen[slot] = value;
+        return value;
+      }
+      if (tokenEquals(value)) {
+        return value;
+      }
+      slot = (slot + 1) & mask;
+    }
+    // The table is full - more distinct values than we expected
+    return Interner.intern(new String(token, 0, tokenLength));
+  }
+
+  private boolean tokenEquals(String value) {
+    return value.length() == tokenLength && tokenIs(value);
+  }
+
+  /* Reads a number, which may also be given as a string; null counts as 0 */
+  private double readNumber() {
+    char c = nextClean();
+    if (c == 'n') {
+      skipLiteral();
+      return 0;
+    }
+    if (c == '"') {
+      readToken('"');
+    } else {
+      position--;
+      readToken((char)0);
+    }
+    return parseDouble();
+  }
+
+  /*
+   * Parses the number in token. Numbers with at most 15 significant digits
+   * and a small exponent - i.e. all prices, alcohol levels and so on -
+   * are computed exactly from a long and a power of ten, without any
+   * allocation. Anything else is left to Double.parseDouble.
+   */
+  private double parseDouble() {
+    int i = 0;
+    boolean negative = false;
+    if (i < tokenLength && (token[i] == '-' || token[i] == '+')) {
+      negative = token[i] == '-';
+      i++;
+    }
+    long mantissa = 0;
+    int digits = 0;
+    int scale = 0;
+    boolean any = false;
+    while (i < tokenLength && token[i] >= '0' && token[i] <= '9') {
+      if (mantissa != 0 || token[i] != '0') {
+        digits++;
+      }
+      mantissa = mantissa * 10 + (token[i++] - '0');
+      any = true;
+    }
+    if (i < tokenLength && token[i] == '.') {
+      i++;
+      while (i < tokenLength && token[i] >= '0' && token[i] <= '9') {
+        if (mantissa != 0 || token[i] != '0') {
+          digits++;
+        }
+        mantissa = mantissa * 10 + (token[i++] - '0');
+        scale++;
+        any = true;
+      }
+    }
+    if (any && i == tokenLength && digits <= 15 && scale < POWERS_OF_TEN.length) {
+      double value = mantissa / POWERS_OF_TEN[scale];
+      return negative ? -value : value;
+    }
+    try {
+      return Double.parseDouble(new String(token, 0, tokenLength).trim());
+    } catch (NumberFormatException e) {
+      throw syntaxError("Not a number: " + new String(token, 0, tokenLength));
+    }
+  }
+
+  /*
+   * Reads characters into token up to the terminator (which is consumed),
+   * or - if the terminator is 0 - up to the next structural character
+   * (which is not consumed).
+   */
+  private void readToken(char terminator) {
+    tokenLength = 0;
+    while (true) {
+      char c = nextChar();
+      if (terminator != 0) {
+        if (c == terminator) {
+          return;
+        }
+        if (c == '\\') {
+          c = escaped();
+        }
+      } else if (c == ',' || c == '}' || c == ']' || c <= ' ') {
+        position--;
+        return;
+      }
+      if (tokenLength == token.length) {
+        char[] larger = new char[token.length * 2];
+        System.arraycopy(token, 0, larger, 0, tokenLength);
+        token = larger;
+      }
+      token[tokenLength++] = c;
+    }
+  }
+
+  private char escaped() {
+    char c = nextChar();
+    switch (c) {
+      case 'b': return '\b';
+      case 't': return '\t';
+      case 'n': return '\n';
+      case 'f': return '\f';
+      case 'r': return '\r';
+      case 'u':
+        int code = 0;
+        for (int i = 0; i < 4; i++) {
+          int digit = Character.digit(nextChar(), 16);
+          if (digit < 0) {
+            throw syntaxError("Illegal \\u escape");
+          }
+          code = code * 16 + digit;
+        }
+        return (char)code;
+      default: return c; // " \ /
+    }
+  }
+
+  /* Skips a value of any kind, including nested objects and arrays */
+  private void skipValue() {
+    char c = nextClean();
+    switch (c) {
+      case '"':
+        while ((c = nextChar()) != '"') {
+          if (c == '\\') {
+            escaped();
+          }
+        }
+        return;
+      case '{':
+      case '[':
+        int depth = 1;
+        while (depth > 0) {
+          c = nextChar();
+          if (c == '"') {
+            position--;
+            skipValue();
+          } else if (c == '{' || c == '[') {
+            depth++;
+          } else if (c == '}' || c == ']') {
+            depth--;
+          }
+        }
+        return;
+      default:
+        position--;
+        readToken((char)0);
+    }
+  }
+
+  /* Skips the rest of true, false or null */
+  private void skipLiteral() {
+    position--;
+    readToken((char)0);
+  }
+
+  private char nextClean() {
+    char c;
+    do {
+      c = nextChar();
+    } while (c <= ' ');
+    return c;
+  }
+
+  private char nextChar() {
+    if (position == limit && !fill()) {
+      throw syntaxError("Unexpected end of input");
+    }
+    return buffer[position++];
+  }
+
+  private boolean fill() {
+    try {
+      int read = reader.read(buffer, 0, buffer.length);
+      if (read <= 0) {
+        return false;
+      }
+      // position-- (to push back one char) must keep working after a fill
+      position = 0;
+      limit = read;
+      return true;
+    } catch (IOException e) {
+      throw new ApiAccessException("Could not read products: " + e.getMessage(), e);
+    }
+  }
+
+  private Product end() {
+    finished = true;
+    Metrics.record(Stage.DECODE, startNanos);
+    return null;
+  }
+
+  private MalformedResponseException syntaxError(String message) {
+    finished = true;
+    return new MalformedResponseException("Could not parse products: " + message);
+  }
+
+  /**
+   * Closes the underlying Reader (or InputStream).
+   */
+  @Override
+  public void close() {
+    try {
+      reader.close();
+    } catch (IOException ignore) {}
+  }
+}
@@ -0,0 +1,425 @@
+package se.itu.systemet.rest;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * <p>A query for products with typed, validated params: a name, product
+ * groups, types, and alcohol and price ranges. The text a user typed is
+ * parsed once, when the ProductQuery is built, so input which can't be
+ * used is rejected with an InvalidQueryException instead of being sent
+ * to the API.</p>
+ *
+ * <p>Numbers are normalized: "1,5", " 1.50 " and "1.5" are all 1.5,
+ * and are sent as "1.5". Product groups and types are sorted. So two
+ * ProductQueries which ask for the same thing are equal, and have the
+ * same key() - which is also the key CachingApiAccess uses.</p>
+ *
+ * <p>Typical use:
+ *<pre>
+ * ProductQuery query = new ProductQuery.Builder()
+ *   .minPrice(minPriceField.getText())
+ *   .maxAlcohol("5,3")
+ *   .build();
+ * if (query.canMatch()) {
+ *   List&lt;Product&gt; products = api.fetch(query.toQuery());
+ * }
+ *</pre>
+ * </p>
+ */
+public class ProductQuery {
+
+  /**
+   * The key of the param for filtering on name.
+   */
+  public static final String NAME = "name";
+  /**
+   * The key of the param for the lowest alcohol level.
+   */
+  public static final String MIN_ALCOHOL = "min_alcohol";
+  /**
+   * The key of the param for the highest alcohol level.
+   */
+  public static final String MAX_ALCOHOL = "max_alcohol";
+  /**
+   * The key of the param for the lowest price.
+   */
+  public static final String MIN_PRICE = "min_price";
+  /**
+   * The key of the param for the highest price.
+   */
+  public static final String MAX_PRICE = "max_price";
+
+  private String name; // null matches all names
+  private Set<String> productGroups; // null matches all product groups
+  private Set<String> types; // null matches all types
+  private double minAlcohol;
+  private double maxAlcohol;
+  private double minPrice;
+  private double maxPrice;
+  private String key; // computed when first needed
+
+  /**
+   * A builder for ProductQuery. Every param is optional, and an empty
+   * (or blank) text means that the param isn't used.
+   */
+  public static class Builder {
+    private String name;
+    private Set<String> productGroups;
+    private Set<String> types;
+    private double minAlcohol = Double.NEGATIVE_INFINITY;
+    private double maxAlcohol = Double.POSITIVE_INFINITY;
+    private double minPrice = Double.NEGATIVE_INFINITY;
+    private double maxPrice = Double.POSITIVE_INFINITY;
+
+    /**
+     * Provides the text names should contain, or start with if it ends with '*'.
+     */
+    public Builder name(String name) {
+      this.name = name == null || name.trim().isEmpty() ? null : name.trim();
+      return this;
+    }
+
+    /**
+     * Provides the product groups to match any of, or null for all.
+     */
+    public Builder productGroups(Collection<String> productGroups) {
+      this.productGroups = values(productGroups);
+      return this;
+    }
+
+    /**
+     * Provides the types to match any of, or null for all.
+     */
+    public Builder types(Collection<String> types) {
+      this.types = values(types);
+      return this;
+    }
+
+    /**
+     * Provides the lowest alcohol level, in percent.
+     * @throws InvalidQueryException if alcohol isn't a percentage
+     */
+    public Builder minAlcohol(double alcohol) {
+      this.minAlcohol = check(MIN_ALCOHOL, alcohol, 100);
+      return this;
+    }
+
+    /**
+     * Provides the lowest alcohol level, in percent, as text.
+     * @throws InvalidQueryException if the text isn't a percentage
+     */
+    public Builder minAlcohol(String alcohol) {
+      this.minAlcohol = parse(MIN_ALCOHOL, alcohol, 100, Double.NEGATIVE_INFINITY);
+      return this;
+    }
+
+    /**
+     * Provides the highest alcohol level, in percent.
+     * @throws InvalidQueryException if alcohol isn't a percentage
+     */
+    public Builder maxAlcohol(double alcohol) {
+      this.maxAlcohol = check(MAX_ALCOHOL, alcohol, 100);
+      return this;
+    }
+
+    /**
+     * Provides the highest alcohol level, in percent, as text.
+     * @throws InvalidQueryException if the text isn't a percentage
+     */
+    public Builder maxAlcohol(String alcohol) {
+      this.maxAlcohol = parse(MAX_ALCOHOL, alcohol, 100, Double.POSITIVE_INFINITY);
+      return this;
+    }
+
+    /**
+     * Provides the lowest price, in SEK.
+     * @throws InvalidQueryException if price is negative
+     */
+    public Builder minPrice(double price) {
+      this.minPrice = check(MIN_PRICE, price, Double.MAX_VALUE);
+      return this;
+    }
+
+    /**
+     * Provides the lowest price, in SEK, as text.
+     * @throws InvalidQueryException if the text isn't a price
+     */
+    public Builder minPrice(String price) {
+      this.minPrice = parse(MIN_PRICE, price, Double.MAX_VALUE, Double.NEGATIVE_INFINITY);
+      return this;
+    }
+
+    /**
+     * Provides the highest price, in SEK.
+     * @throws InvalidQueryException if price is negative
+     */
+    public Builder maxPrice(double price) {
+      this.maxPrice = check(MAX_PRICE, price, Double.MAX_VALUE);
+      return this;
+    }
+
+    /**
+     * Provides the highest price, in SEK, as text.
+     * @throws InvalidQueryException if the text isn't a price
+     */
+    public Builder maxPrice(String price) {
+      this.maxPrice = parse(MAX_PRICE, price, Double.MAX_VALUE, Double.POSITIVE_INFINITY);
+      return this;
+    }
+
+    /**
+     * Builds the ProductQuery.
+     */
+    public ProductQuery build() {
+      return new ProductQuery(this);
+    }
+  }
+
+  private ProductQuery(Builder builder) {
+    this.name = builder.name;
+    this.productGroups = builder.productGroups;
+    this.types = builder.types;
+    this.minAlcohol = builder.minAlcohol;
+    this.maxAlcohol = builder.maxAlcohol;
+    this.minPrice = builder.minPrice;
+    this.maxPrice = builder.maxPrice;
+  }
+
+  /**
+   * <p>Returns the ProductQuery for the params of a Query, or null if
+   * the Query has params a ProductQuery doesn't know about.</p>
+   * @param query The Query to parse
+   * @return The ProductQuery for query, or null
+   * @throws InvalidQueryException if a param has a value which can't be used
+   */
+  public static ProductQuery of(Query query) {
+    if (!(query instanceof RestQuery)) {
+      return null;
+    }
+    Builder builder = new Builder();
+    for (Map.Entry<String, String> param : ((RestQuery)query).keyToValue.entrySet()) {
+      String value = param.getValue();
+      switch (param.getKey()) {
+        case NAME: builder.name(value); break;
+        case FacetCounts.PRODUCT_GROUP: builder.productGroups(FacetCounts.split(value)); break;
+        case FacetCounts.TYPE: builder.types(FacetCounts.split(value)); break;
+        case MIN_ALCOHOL: builder.minAlcohol(value); break;
+        case MAX_ALCOHOL: builder.maxAlcohol(value); break;
+        case MIN_PRICE: builder.minPrice(value); break;
+        case MAX_PRICE: builder.maxPrice(value); break;
+        default: return null;
+      }
+    }
+    return builder.build();
+  }
+
+  /*
+   * Parses a number the way people type it: surrounding and grouping
+   * spaces are ignored, and a decimal comma is the same as a point.
+   */
+  private static double parse(String key, String text, double max, double none) {
+    if (text == null) {
+      return none;
+    }
+    StringBuilder number = new StringBuilder(text.length());
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      if (c == ',') {
+        number.append('.');
+      } else if (!Character.isWhitespace(c) && !Character.isSpaceChar(c)) {
+        number.append(c);
+      }
+    }
+    if (number.length() == 0) {
+      return none;
+    }
+    for (int i = 0; i < number.length(); i++) {
+      char c = number.charAt(i);
+      if (!(c >= '0' && c <= '9') && c != '.' && c != '-') {
+        throw new InvalidQueryException(key, "Not a number: " + text.trim());
+      }
+    }
+    try {
+      return check(key, Double.parseDouble(number.toString()), max);
+    } catch (NumberFormatException e) { // e.g. "1.2.3"
+      throw new InvalidQueryException(key, "Not a number: " + text.trim());
+    }
+  }
+
+  private static double check(String key, double value, double max) {
+    if (Double.isNaN(value) || Double.isInfinite(value)) {
+      throw new InvalidQueryException(key, "Not a number: " + value);
+    }
+    if (value < 0) {
+      throw new InvalidQueryException(key, "Must not be negative: " + number(value));
+    }
+    if (value > max) {
+      throw new InvalidQueryException(key, "Must be at most " + number(max) + ": " + number(value));
+    }
+    return value;
+  }
+
+  private static Set<String> values(Collection<String> values) {
+    if (values == null) {
+      return null;
+    }
+    Set<String> sorted = new TreeSet<>();
+    for (String value : values) {
+      if (value != null && !value.trim().isEmpty()) {
+        sorted.add(value.trim());
+      }
+    }
+    return Collections.unmodifiableSet(sorted);
+  }
+
+  /* A number without trailing zeros or exponent, e.g. 100 and 1.5 */
+  private static String number(double value) {
+    return BigDecimal.valueOf(value).stripTrailingZeros().toPlainString();
+  }
+
+  /**
+   * Returns the text names should contain, or start with if it ends
+   * with '*'.
+   * @return The name to search for, or null for all names
+   */
+  public String name() {
+    return name;
+  }
+
+  /**
+   * Returns the product groups, of which a Product must have any.
+   * @return The product groups, or null for all product groups
+   */
+  public Set<String> productGroups() {
+    return productGroups;
+  }
+
+  /**
+   * Returns the types, of which a Product must have any.
+   * @return The types, or null for all types
+   */
+  public Set<String> types() {
+    return types;
+  }
+
+  /**
+   * Returns the lowest alcohol level.
+   * @return The lowest alcohol level, or negative infinity for no limit
+   */
+  public double minAlcohol() {
+    return minAlcohol;
+  }
+
+  /**
+   * Returns the highest alcohol level.
+   * @return The highest alcohol level, or positive infinity for no limit
+   */
+  public double maxAlcohol() {
+    return maxAlcohol;
+  }
+
+  /**
+   * Returns the lowest price.
+   * @return The lowest price, or negative infinity for no limit
+   */
+  public double minPrice() {
+    return minPrice;
+  }
+
+  /**
+   * Returns the highest price.
+   * @return The highest price, or positive infinity for no limit
+   */
+  public double maxPrice() {
+    return maxPrice;
+  }
+
+  /**
+   * Returns true if this query limits alcohol or price.
+   */
+  boolean hasRanges() {
+    return minAlcohol != Double.NEGATIVE_INFINITY || maxAlcohol != Double.POSITIVE_INFINITY ||
+      minPrice != Double.NEGATIVE_INFINITY || maxPrice != Double.POSITIVE_INFINITY;
+  }
+
+  /**
+   * Returns false if no Product can match this query, e.g. because the
+   * minimum price is higher than the maximum price, so there is no
+   * need to ask the API.
+   * @return false if no Product can match this query
+   */
+  public boolean canMatch() {
+    return minAlcohol <= maxAlcohol && minPrice <= maxPrice &&
+      (productGroups == null || !productGroups.isEmpty()) &&
+      (types == null || !types.isEmpty());
+  }
+
+  /**
+   * Returns a Query with the normalized params of this ProductQuery.
+   * @return A Query for this ProductQuery
+   */
+  public Query toQuery() {
+    RestQuery query = new RestQuery();
+    if (name != null) {
+      query.addParam(new Param(NAME, name));
+    }
+    if (productGroups != null) {
+      query.addParam(new Param(FacetCounts.PRODUCT_GROUP, FacetCounts.join(productGroups)));
+    }
+    if (types != null) {
+      query.addParam(new Param(FacetCounts.TYPE, FacetCounts.join(types)));
+    }
+    if (minAlcohol != Double.NEGATIVE_INFINITY) {
+      query.addParam(new Param(MIN_ALCOHOL, number(minAlcohol)));
+    }
+    if (maxAlcohol != Double.POSITIVE_INFINITY) {
+      query.addParam(new Param(MAX_ALCOHOL, number(maxAlcohol)));
+    }
+    if (minPrice != Double.NEGATIVE_INFINITY) {
+      query.addParam(new Param(MIN_PRICE, number(minPrice)));
+    }
+    if (maxPrice != Double.POSITIVE_INFINITY) {
+      query.addParam(new Param(MAX_PRICE, number(maxPrice)));
+    }
+    return query;
+  }
+
+  /**
+   * Returns the canonical encoding of this query: its normalized params,
+   * ordered by key. Equal queries have equal keys.
+   * @return The canonical encoding of this query
+   */
+  public String key() {
+    String key = this.key;
+    if (key == null) {
+      // A race here only means that the key is computed twice
+      key = ((RestQuery)toQuery()).canonicalString();
+      this.key = key;
+    }
+    return key;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    return o instanceof ProductQuery && key().equals(((ProductQuery)o).key());
+  }
+
+  @Override
+  public int hashCode() {
+    return key().hashCode();
+  }
+
+  /**
+   * Returns this query as a String, the same as key().
+   * @return This query as a String
+   */
+  @Override
+  public String toString() {
+    return key();
+  }
+}
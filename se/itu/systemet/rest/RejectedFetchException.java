@@ -0,0 +1,19 @@
+package se.itu.systemet.rest;
+
+/**
+ * Signals that a fetch wasn't made at all, because too many fetches
+ * were in flight already - the limit of a ResilientApiAccess, not a
+ * failure of the API, so it is neither retried nor counted against it.
+ */
+public class RejectedFetchException extends ApiAccessException {
+
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * Creates a new RejectedFetchException with the specified message.
+   * @param message A description of what went wrong
+   */
+  public RejectedFetchException(String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,639 @@
+package se.itu.systemet.rest;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import se.itu.systemet.domain.Product;
+
+/**
+ * <p>An ApiAccess which protects its callers from a slow or failing
+ * ApiAccess behind it:</p>
+ * <ul>
+ * <li><b>Deadline</b> - a call to fetch() or changesSince() (and the
+ * opening of a stream()) gives up after the timeout, retries included,
+ * instead of hanging.</li>
+ * <li><b>Retries</b> - a failed fetch (a timeout, no connection or an
+ * HTTP status of 5xx or 429) is tried again, at most retries times.
+ * Before each retry we wait a random time between 0 and backoff * 2^n
+ * ms, so that many clients don't all come back at the same time. All
+ * fetches are GET requests, so trying again is safe.</li>
+ * <li><b>Circuit breaker</b> - after failureThreshold failed fetches in
+ * a row (failures which are retried - not e.g. 404 Not Found or a
+ * response we can't parse, which say that the API is there), the
+ * circuit opens: for openMillis ms no fetches are made at all. Each
+ * call gets the last good result for its Query instead - which a
+ * CachingApiAccess in front doesn't keep - or an ApiAccessException
+ * right away if there is none. Then one fetch is let through as a
+ * trial, which closes the circuit if it works.</li>
+ * <li><b>Bulkhead</b> - at most maxConcurrent fetches are in flight at
+ * once. A call which can't get a place before its deadline fails. A
+ * fetch keeps its place until it has really ended, also when its
+ * caller has given up on it, so fetches hanging on a slow API can't
+ * pile up - that is what a timeout of the underlying ApiAccess (like
+ * that of HttpApiAccess) is for.</li>
+ * </ul>
+ *
+ * <p>A call whose thread is interrupted, like a search the user has
+ * already replaced by a new one, and a call rejected by the bulkhead
+ * (with a RejectedFetchException) are given up right away: they are
+ * not retried, and count as neither a good result nor a failure.</p>
+ *
+ * <p>A Stream from this ApiAccess is opened with the same protection,
+ * and then passed on still streaming: it keeps its place in the
+ * bulkhead until it has been read to the end or closed, and counts as
+ * a good result - or a failure - for the circuit breaker when it ends.
+ * Reading it has no deadline, as the caller decides how fast it is
+ * read, and a Stream which fails half way is not retried.</p>
+ *
+ * <p>Typical use:
+ *<pre>
+ * ApiAccess api = new ResilientApiAccess.Builder(new HttpApiAccess(url))
+ *   .timeoutMillis(5000)
+ *   .retries(2)
+ *   .build();
+ *</pre>
+ * </p>
+ */
+public class ResilientApiAccess implements ApiAccess {
+
+  private static final int LAST_GOOD_RESULTS = 50;
+
+  private ApiAccess api;
+  private long timeoutMillis;
+  private int retries;
+  private long backoffMillis;
+  private int failureThreshold;
+  private long openMillis;
+  private Semaphore inFlight;
+
+  // The circuit breaker, guarded by this
+  private int failuresInARow;
+  private boolean open;
+  private long openUntil; // System.nanoTime() when a trial fetch may be made
+  private boolean trialInFlight;
+  private Map<String, List<Product>> lastGood;
+
+  // Statistics, guarded by this
+  private long calls;
+  private long failures;
+  private long errors;
+  private long timeouts;
+  private long retried;
+  private long rejected;
+  private long shortCircuited;
+  private long servedLastGood;
+  private long opened;
+
+  /**
+   * A builder for ResilientApiAccess.
+   */
+  public static class Builder {
+    private ApiAccess api;
+    private long timeoutMillis = 10_000;
+    private int retries = 2;
+    private long backoffMillis = 100;
+    private int failureThreshold = 5;
+    private long openMillis = 30_000;
+    private int maxConcurrent = 8;
+
+    /**
+     * Creates a new Builder for a ResilientApiAccess in front of api.
+     * @param api The ApiAccess to protect callers from
+     */
+    public Builder(ApiAccess api) {
+      this.api = api;
+    }
+
+    /**
+     * Provides the deadline of a call, retries included (default 10000).
+     */
+    public Builder timeoutMillis(long timeoutMillis) {
+      this.timeoutMillis = timeoutMillis;
+      return this;
+    }
+
+    /**
+     * Provides the most times a failed fetch is tried again (default 2).
+     */
+    public Builder retries(int retries) {
+      this.retries = retries;
+      return this;
+    }
+
+    /**
+     * Provides the longest wait before the first retry, doubled for
+     * each retry after that (default 100).
+     */
+    public Builder backoffMillis(long backoffMillis) {
+      this.backoffMillis = backoffMillis;
+      return this;
+    }
+
+    /**
+     * Provides the number of failed fetches in a row which opens the
+     * circuit (default 5).
+     */
+    public Builder failureThreshold(int failureThreshold) {
+      this.failureThreshold = failureThreshold;
+      return this;
+    }
+
+    /**
+     * Provides how long the circuit stays open (default 30000).
+     */
+    public Builder openMillis(long openMillis) {
+      this.openMillis = openMillis;
+      return this;
+    }
+
+    /**
+     * Provides the most fetches in flight at once (default 8).
+     */
+    public Builder maxConcurrent(int maxConcurrent) {
+      this.maxConcurrent = maxConcurrent;
+      return this;
+    }
+
+    /**
+     * Builds the ResilientApiAccess.
+     */
+    public ResilientApiAccess build() {
+      return new ResilientApiAccess(this);
+    }
+  }
+
+  private ResilientApiAccess(Builder builder) {
+    this.api = builder.api;
+    this.timeoutMillis = builder.timeoutMillis;
+    this.retries = builder.retries;
+    this.backoffMillis = builder.backoffMillis;
+    this.failureThreshold = builder.failureThreshold;
+    this.openMillis = builder.openMillis;
+    this.inFlight = new Semaphore(builder.maxConcurrent, true);
+    this.lastGood = new LinkedHashMap<String, List<Product>>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, List<Product>> eldest) {
+        return size() > LAST_GOOD_RESULTS;
+      }
+    };
+  }
+
+  /**
+   * Returns a List&lt;Product&gt; using a Query, within the deadline.
+   * @param query The Query used for fetching Products from the API.
+   * @return A List&lt;Product&gt; using the specified Query - while the
+   * circuit is open, the last good result for the Query.
+   * @throws ApiAccessException if the Products couldn't be fetched in
+   * time, and there is no last good result to serve while the circuit
+   * is open
+   * @throws InvalidQueryException if a param has a value which can't be used
+   */
+  public List<Product> fetch(Query query) {
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+    String key = CachingApiAccess.key(query);
+    synchronized (this) {
+      calls++;
+    }
+    for (int attempt = 0; ; attempt++) {
+      if (!allowFetch()) {
+        return lastGood(key, "the API is failing, so it isn't asked for a while");
+      }
+      try {
+        List<Product> products = inTime(() -> api.fetchAsync(query), deadline);
+        succeeded(key, products);
+        return products;
+      } catch (ApiAccessException e) {
+        retryOrThrow(e, attempt, deadline);
+      } catch (RuntimeException e) {
+        // Not the API failing (e.g. an InvalidQueryException) - but it may have been the trial
+        trialEnded();
+        throw e;
+      }
+    }
+  }
+
+  /**
+   * Returns the Products for a Query as a Stream, opened within the
+   * deadline and passed on as the Products arrive.
+   * @param query The Query used for fetching Products from the API.
+   * @return A Stream&lt;Product&gt; using the specified Query - while the
+   * circuit is open, of the last good result for the Query. It must be
+   * closed, or read to the end, to give back its place in the bulkhead.
+   * @throws ApiAccessException if the Stream couldn't be opened in time,
+   * and there is no last good result to serve while the circuit is open
+   * @throws InvalidQueryException if a param has a value which can't be used
+   */
+  @Override
+  public Stream<Product> stream(Query query) {
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+    String key = CachingApiAccess.key(query);
+    synchronized (this) {
+      calls++;
+    }
+    for (int attempt = 0; ; attempt++) {
+      if (!allowFetch()) {
+        return lastGood(key, "the API is failing, so it isn't asked for a while").stream();
+      }
+      try {
+        return guarded(key, openInTime(query, deadline));
+      } catch (ApiAccessException e) {
+        retryOrThrow(e, attempt, deadline);
+      } catch (RuntimeException e) {
+        trialEnded();
+        throw e;
+      }
+    }
+  }
+
+  /* Counts a failed attempt, and waits before the next one - or throws e if there is none */
+  private void retryOrThrow(ApiAccessException e, int attempt, long deadline) {
+    if (!counted(e)) {
+      throw e;
+    }
+    long wait = backoff(attempt);
+    if (attempt == retries || System.nanoTime() + wait * 1_000_000 >= deadline) {
+      throw e;
+    }
+    synchronized (this) {
+      retried++;
+    }
+    sleep(wait);
+  }
+
+  /* Counts a failed attempt by what it says about the API: true if it is failing, so trying again may help */
+  private boolean counted(ApiAccessException e) {
+    if (Thread.currentThread().isInterrupted() || e instanceof RejectedFetchException) {
+      trialEnded(); // the caller gave up, or the API wasn't asked: neither good nor failed
+      return false;
+    }
+    if (!retryable(e)) {
+      error(); // e.g. 404 or a response we can't parse: the API is there, but asking again won't help
+      return false;
+    }
+    failed();
+    return true;
+  }
+
+  /* Opens a Stream with a place in the bulkhead, giving up at the deadline. The Stream keeps the place. */
+  private Stream<Product> openInTime(Query query, long deadline) {
+    acquire(deadline);
+    CompletableFuture<Stream<Product>> opening;
+    try {
+      opening = CompletableFuture.supplyAsync(() -> api.stream(query), ApiExecutor.POOL);
+    } catch (RuntimeException e) {
+      inFlight.release();
+      throw e;
+    }
+    try {
+      return opening.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+    } catch (TimeoutException e) {
+      closeWhenOpened(opening);
+      synchronized (this) {
+        timeouts++;
+      }
+      throw new ApiAccessException("No products within " + timeoutMillis + " ms", e);
+    } catch (ExecutionException e) {
+      inFlight.release();
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException)e.getCause(); // e.g. ApiAccessException or InvalidQueryException
+      }
+      throw new ApiAccessException("Could not fetch products: " + e.getCause(), e.getCause());
+    } catch (InterruptedException e) {
+      closeWhenOpened(opening);
+      Thread.currentThread().interrupt();
+      throw new ApiAccessException("Interrupted while fetching products", e);
+    }
+  }
+
+  /* Closes a Stream we gave up on once it has been opened, and only then gives back its place */
+  private void closeWhenOpened(CompletableFuture<Stream<Product>> opening) {
+    opening.whenComplete((stream, e) -> {
+        try {
+          if (stream != null) {
+            stream.close();
+          }
+        } finally {
+          inFlight.release();
+        }
+      });
+  }
+
+  /*
+   * Passes on the Products of source, and when it ends - at the end,
+   * failing or closed - counts the outcome and gives back its place
+   */
+  private Stream<Product> guarded(String key, Stream<Product> source) {
+    Iterator<Product> iterator = source.iterator();
+    List<Product> received = new ArrayList<>();
+    AtomicBoolean ended = new AtomicBoolean();
+    Consumer<Runnable> end = outcome -> {
+      if (ended.compareAndSet(false, true)) {
+        try {
+          outcome.run();
+        } finally {
+          inFlight.release();
+        }
+      }
+    };
+    Spliterator<Product> products =
+      new Spliterators.AbstractSpliterator<Product>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+        @Override
+        public boolean tryAdvance(Consumer<? super Product> action) {
+          Product product;
+          try {
+            if (!iterator.hasNext()) {
+              end.accept(() -> succeeded(key, received));
+              return false;
+            }
+            product = iterator.next();
+          } catch (ApiAccessException e) {
+            end.accept(() -> counted(e));
+            throw e;
+          } catch (RuntimeException e) {
+            end.accept(ResilientApiAccess.this::trialEnded);
+            throw e;
+          }
+          received.add(product);
+          action.accept(product);
+          return true;
+        }
+      };
+    return StreamSupport.stream(products, false).onClose(() -> {
+        try {
+          source.close();
+        } finally {
+          end.accept(this::trialEnded); // closed before the end: neither good nor failed
+        }
+      });
+  }
+
+  /**
+   * Returns the changes to the catalog since a version of it, within
+   * the deadline, with retries, a place in the bulkhead and the circuit
+   * breaker - just like fetch(Query), the whole catalog included.
+   * @param version The version of the catalog we have
+   * @return The changes since version
+   * @throws ApiAccessException if the changes couldn't be fetched in
+   * time, or the circuit is open
+   */
+  @Override
+  public CatalogChanges changesSince(long version) {
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+    synchronized (this) {
+      calls++;
+    }
+    for (int attempt = 0; ; attempt++) {
+      if (!allowFetch()) {
+        throw new ApiAccessException("No catalog changes: the API is failing, so it isn't asked for a while");
+      }
+      try {
+        CatalogChanges changes =
+          inTime(() -> CompletableFuture.supplyAsync(() -> api.changesSince(version), ApiExecutor.POOL), deadline);
+        succeeded();
+        return changes;
+      } catch (ApiAccessException e) {
+        retryOrThrow(e, attempt, deadline);
+      } catch (RuntimeException e) {
+        trialEnded();
+        throw e;
+      }
+    }
+  }
+
+  /* Makes a call with a place in the bulkhead, giving up at the deadline */
+  private <T> T inTime(Supplier<CompletableFuture<T>> call, long deadline) {
+    acquire(deadline);
+    CompletableFuture<T> future;
+    try {
+      future = call.get();
+    } catch (RuntimeException e) {
+      inFlight.release();
+      throw e;
+    }
+    // Cancelling doesn't end e.g. an HTTP exchange, so the place is kept until the fetch has ended
+    future.whenComplete((result, e) -> inFlight.release());
+    try {
+      return future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+    } catch (TimeoutException e) {
+      synchronized (this) {
+        timeouts++;
+      }
+      throw new ApiAccessException("No products within " + timeoutMillis + " ms", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException)e.getCause(); // e.g. ApiAccessException or InvalidQueryException
+      }
+      throw new ApiAccessException("Could not fetch products: " + e.getCause(), e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ApiAccessException("Interrupted while fetching products", e);
+    }
+  }
+
+  /* Takes a place in the bulkhead, or fails at the deadline */
+  private void acquire(long deadline) {
+    try {
+      if (!inFlight.tryAcquire(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+        synchronized (this) {
+          rejected++;
+        }
+        throw new RejectedFetchException("Too many fetches in flight, gave up after " + timeoutMillis + " ms");
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ApiAccessException("Interrupted while waiting to fetch products", e);
+    }
+  }
+
+  private static boolean retryable(ApiAccessException e) {
+    if (e instanceof MalformedResponseException || e instanceof RejectedFetchException) {
+      return false;
+    }
+    int status = e.status();
+    return status < 0 || status >= 500 || status == 429;
+  }
+
+  /* A random wait before retry number attempt + 1: "full jitter" */
+  private long backoff(int attempt) {
+    long max = backoffMillis << Math.min(attempt, 20);
+    return ThreadLocalRandom.current().nextLong(max + 1);
+  }
+
+  private static void sleep(long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ApiAccessException("Interrupted while waiting to retry", e);
+    }
+  }
+
+  /* True if the circuit is closed, or if this fetch may be the trial */
+  private synchronized boolean allowFetch() {
+    if (!open) {
+      return true;
+    }
+    if (System.nanoTime() - openUntil < 0 || trialInFlight) {
+      shortCircuited++;
+      return false;
+    }
+    trialInFlight = true;
+    return true;
+  }
+
+  private synchronized void succeeded(String key, List<Product> products) {
+    succeeded();
+    lastGood.put(key, products);
+  }
+
+  private synchronized void succeeded() {
+    failuresInARow = 0;
+    open = false;
+    trialInFlight = false;
+  }
+
+  private synchronized void failed() {
+    failures++;
+    failuresInARow++;
+    if (trialInFlight || (!open && failuresInARow >= failureThreshold)) {
+      if (!open) {
+        opened++;
+      }
+      open = true;
+      trialInFlight = false;
+      openUntil = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(openMillis);
+    }
+  }
+
+  /* Neither a good result nor a failure, e.g. a Stream closed half way - but it may have been the trial */
+  private synchronized void trialEnded() {
+    trialInFlight = false;
+  }
+
+  /* A failure which isn't the API failing, so it doesn't count towards opening the circuit */
+  private synchronized void error() {
+    errors++;
+    trialInFlight = false;
+  }
+
+  private synchronized List<Product> lastGood(String key, String reason) {
+    List<Product> products = lastGood.get(key);
+    if (products == null) {
+      throw new ApiAccessException("No products: " + reason);
+    }
+    servedLastGood++;
+    return StaleResult.of(products); // so a cache in front doesn't keep it as a fresh result
+  }
+
+  /**
+   * Returns true if the circuit is open, i.e. the API isn't asked.
+   * @return true if the circuit is open
+   */
+  public synchronized boolean isOpen() {
+    return open;
+  }
+
+  /**
+   * Returns the number of calls to fetch(), stream() and changesSince() so far.
+   * @return The number of calls so far
+   */
+  public synchronized long calls() {
+    return calls;
+  }
+
+  /**
+   * Returns the number of failed fetches which are retried (timeouts,
+   * no connection, 5xx or 429), retries included.
+   * @return The number of failed fetches
+   */
+  public synchronized long failures() {
+    return failures;
+  }
+
+  /**
+   * Returns the number of fetches answered with an error which isn't
+   * retried, like 404 Not Found or a response we can't parse. They
+   * don't open the circuit.
+   * @return The number of fetches answered with an error
+   */
+  public synchronized long errors() {
+    return errors;
+  }
+
+  /**
+   * Returns the number of fetches which didn't finish before the deadline.
+   * @return The number of timed out fetches
+   */
+  public synchronized long timeouts() {
+    return timeouts;
+  }
+
+  /**
+   * Returns the number of retries made.
+   * @return The number of retries
+   */
+  public synchronized long retried() {
+    return retried;
+  }
+
+  /**
+   * Returns the number of fetches which didn't get a place in the bulkhead.
+   * @return The number of rejected fetches
+   */
+  public synchronized long rejected() {
+    return rejected;
+  }
+
+  /**
+   * Returns the number of fetches not made because the circuit was open.
+   * @return The number of short circuited fetches
+   */
+  public synchronized long shortCircuited() {
+    return shortCircuited;
+  }
+
+  /**
+   * Returns the number of calls answered with a last good result.
+   * @return The number of calls answered with a last good result
+   */
+  public synchronized long servedLastGood() {
+    return servedLastGood;
+  }
+
+  /**
+   * Returns the number of times the circuit has opened.
+   * @return The number of times the circuit has opened
+   */
+  public synchronized long opened() {
+    return opened;
+  }
+
+  /**
+   * Returns the state and statistics of this ApiAccess as a String.
+   * @return The state and statistics of this ApiAccess as a String
+   */
+  @Override
+  public synchronized String toString() {
+    return "circuit: " + (open ? "open" : "closed") +
+      ", calls: " + calls + ", failures: " + failures + ", errors: " + errors + ", timeouts: " + timeouts +
+      ", retried: " + retried + ", rejected: " + rejected +
+      ", short circuited: " + shortCircuited + ", served last good: " + servedLastGood +
+      ", opened: " + opened;
+  }
+}
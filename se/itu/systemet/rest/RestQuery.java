@@ -1,8 +1,11 @@
 package se.itu.systemet.rest;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 
 /**
@@ -47,6 +50,62 @@ public class RestQuery implements Query {
     return queryString.toString();
   }
 
+  /**
+   * Returns the query string of this Query for a URI: like
+   * toQueryString(), but with every key and value URL encoded as
+   * UTF-8, so values with characters like &amp;, +, = or % arrive as
+   * they were.
+   * @return An encoded query string for this Query
+   */
+  String encodedQueryString() {
+    StringBuilder queryString = new StringBuilder();
+    for (Param param : params) {
+      if (queryString.length() != 0) {
+        queryString.append("&");
+      }
+      queryString.append(URLEncoder.encode(param.key(), StandardCharsets.UTF_8))
+        .append("=")
+        .append(URLEncoder.encode(param.value(), StandardCharsets.UTF_8));
+    }
+    return queryString.toString();
+  }
+
+  /**
+   * Returns a canonical query string for this Query, with the params
+   * ordered by key (and only the last value for a repeated key), so
+   * that Queries with the same params in different order are equal.
+   * Keys and values are URL encoded like in encodedQueryString(), so
+   * that e.g. x=a%26y%3D1 (one param) and x=a&amp;y=1 (two params)
+   * differ.
+   * @return A canonical query string for this Query
+   */
+  String canonicalString() {
+    StringBuilder canonical = new StringBuilder();
+    for (Map.Entry<String, String> entry : keyToValue.entrySet()) {
+      if (canonical.length() != 0) {
+        canonical.append("&");
+      }
+      canonical.append(URLEncoder.encode(entry.getKey(), StandardCharsets.UTF_8))
+        .append("=")
+        .append(URLEncoder.encode(entry.getValue(), StandardCharsets.UTF_8));
+    }
+    return canonical.toString();
+  }
+
+  /**
+   * Returns a copy of this Query without the params with the
+   * specified keys.
+   */
+  RestQuery without(String... keys) {
+    RestQuery copy = new RestQuery();
+    for (Param param : params) {
+      if (!Arrays.asList(keys).contains(param.key())) {
+        copy.addParam(param);
+      }
+    }
+    return copy;
+  }
+
   /**
    * Returns the value connected to the specified key, as a String.
    * Could be used for testing and debugging.
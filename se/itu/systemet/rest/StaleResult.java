@@ -0,0 +1,86 @@
+package se.itu.systemet.rest;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * <p>A result served in place of a fresh one, like the last good result
+ * a ResilientApiAccess serves while its circuit is open. A cache in
+ * front of it must pass it on without keeping it, or the degraded
+ * answer would outlive the failure it stood in for.</p>
+ *
+ * <p>A Stream of a StaleResult can be told apart too: its Spliterator
+ * (Stream.spliterator(), before any other operation) is stale().</p>
+ */
+final class StaleResult<E> extends AbstractList<E> implements RandomAccess {
+
+  private List<E> result;
+
+  private StaleResult(List<E> result) {
+    this.result = result;
+  }
+
+  /* The result, marked as stale */
+  static <E> List<E> of(List<E> result) {
+    return result instanceof StaleResult ? result : new StaleResult<>(result);
+  }
+
+  static boolean isStale(List<?> result) {
+    return result instanceof StaleResult;
+  }
+
+  static boolean isStale(Spliterator<?> spliterator) {
+    return spliterator instanceof StaleSpliterator;
+  }
+
+  @Override
+  public E get(int index) {
+    return result.get(index);
+  }
+
+  @Override
+  public int size() {
+    return result.size();
+  }
+
+  @Override
+  public Spliterator<E> spliterator() {
+    return new StaleSpliterator<>(result.spliterator());
+  }
+
+  private static final class StaleSpliterator<E> implements Spliterator<E> {
+    private Spliterator<E> spliterator;
+
+    StaleSpliterator(Spliterator<E> spliterator) {
+      this.spliterator = spliterator;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super E> action) {
+      return spliterator.tryAdvance(action);
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super E> action) {
+      spliterator.forEachRemaining(action);
+    }
+
+    @Override
+    public Spliterator<E> trySplit() {
+      return null;
+    }
+
+    @Override
+    public long estimateSize() {
+      return spliterator.estimateSize();
+    }
+
+    @Override
+    public int characteristics() {
+      return spliterator.characteristics();
+    }
+  }
+}
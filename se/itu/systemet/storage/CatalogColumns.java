@@ -0,0 +1,250 @@
+package se.itu.systemet.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import se.itu.systemet.domain.Product;
+
+/**
+ * <p>Products gathered in columns, one row at a time, and written in
+ * the binary layout of a CatalogSnapshot - so a file written from a
+ * CatalogColumns can be loaded by CatalogSnapshot.load().</p>
+ *
+ * <p>The columns are primitive arrays which grow as rows are added,
+ * product groups and types are coded as shorts, and names are encoded
+ * into one heap of UTF-8 bytes, so adding a row creates no objects
+ * besides the bytes of its name.</p>
+ *
+ * <p>The columns are written through a direct ByteBuffer of a fixed
+ * size, which is written to the channel whenever it is full - so
+ * writing takes no more memory however many rows there are.</p>
+ */
+public class CatalogColumns {
+
+  static final int MAGIC = 0x53595342; // "SYSB"
+  static final int VERSION = 1;
+  private static final int MAX_CODES = Short.MAX_VALUE;
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  private int size;
+  private double[] price;
+  private double[] alcohol;
+  private int[] volume;
+  private int[] nr;
+  private short[] group;
+  private short[] type;
+  private int[] offsets; // offsets[i] is where the name of row i starts in names
+  private byte[] names;
+  private Map<String, Short> groupCodes = new HashMap<>();
+  private Map<String, Short> typeCodes = new HashMap<>();
+  private List<String> groups = new ArrayList<>();
+  private List<String> types = new ArrayList<>();
+
+  /**
+   * Creates new, empty CatalogColumns.
+   */
+  public CatalogColumns() {
+    this(1024);
+  }
+
+  /**
+   * Creates new, empty CatalogColumns with room for a number of rows.
+   * More rows can still be added.
+   * @param capacity The number of rows to make room for
+   */
+  public CatalogColumns(int capacity) {
+    capacity = Math.max(capacity, 16);
+    price = new double[capacity];
+    alcohol = new double[capacity];
+    volume = new int[capacity];
+    nr = new int[capacity];
+    group = new short[capacity];
+    type = new short[capacity];
+    offsets = new int[capacity + 1];
+    names = new byte[capacity * 32];
+  }
+
+  /**
+   * Returns the number of rows added.
+   * @return The number of rows
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Adds a Product as a row.
+   * @param product The Product to add
+   */
+  public void add(Product product) {
+    add(product.name(), product.price(), product.alcohol(), product.volume(), product.nr(),
+        product.productGroup(), product.type());
+  }
+
+  /**
+   * Adds a row, e.g. from the fields exported by a Product.
+   * @param name The name, or null - which is written, and loaded, as ""
+   * @param price The price
+   * @param alcohol The alcohol by volume
+   * @param volume The volume
+   * @param nr The number
+   * @param productGroup The product group, or null
+   * @param type The type, or null
+   */
+  public void add(String name, double price, double alcohol, int volume, int nr,
+                  String productGroup, String type) {
+    if (size == this.price.length) {
+      grow();
+    }
+    this.price[size] = price;
+    this.alcohol[size] = alcohol;
+    this.volume[size] = volume;
+    this.nr[size] = nr;
+    this.group[size] = code(productGroup, groupCodes, groups);
+    this.type[size] = code(type, typeCodes, types);
+    int offset = offsets[size];
+    if (name != null) {
+      byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+      if (offset + bytes.length > names.length) {
+        names = Arrays.copyOf(names, Math.max(names.length * 2, offset + bytes.length));
+      }
+      System.arraycopy(bytes, 0, names, offset, bytes.length);
+      offset += bytes.length;
+    }
+    offsets[++size] = offset;
+  }
+
+  private void grow() {
+    int capacity = price.length * 2;
+    price = Arrays.copyOf(price, capacity);
+    alcohol = Arrays.copyOf(alcohol, capacity);
+    volume = Arrays.copyOf(volume, capacity);
+    nr = Arrays.copyOf(nr, capacity);
+    group = Arrays.copyOf(group, capacity);
+    type = Arrays.copyOf(type, capacity);
+    offsets = Arrays.copyOf(offsets, capacity + 1);
+  }
+
+  /**
+   * Writes the rows to a channel, in the layout of a CatalogSnapshot.
+   * The channel is not closed.
+   * @param channel The channel to write to
+   * @throws IOException if the channel can't be written
+   */
+  public void write(WritableByteChannel channel) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    buffer.putInt(MAGIC).putInt(VERSION).putLong(System.currentTimeMillis()).putInt(size);
+    writeStrings(channel, buffer, groups);
+    writeStrings(channel, buffer, types);
+    writeDoubles(channel, buffer, price, size);
+    writeDoubles(channel, buffer, alcohol, size);
+    writeInts(channel, buffer, volume, size);
+    writeInts(channel, buffer, nr, size);
+    writeShorts(channel, buffer, group, size);
+    writeShorts(channel, buffer, type, size);
+    writeInts(channel, buffer, offsets, size + 1);
+    writeBytes(channel, buffer, names, offsets[size]);
+    flush(channel, buffer);
+  }
+
+  /* Writes the buffer to the channel, and empties it */
+  private static void flush(WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+    buffer.flip();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    buffer.clear();
+  }
+
+  private static void writeDoubles(WritableByteChannel channel, ByteBuffer buffer, double[] values, int length)
+    throws IOException {
+    for (int i = 0; i < length; ) {
+      if (buffer.remaining() < 8) {
+        flush(channel, buffer);
+      }
+      int n = Math.min(length - i, buffer.remaining() / 8);
+      buffer.asDoubleBuffer().put(values, i, n);
+      buffer.position(buffer.position() + 8 * n);
+      i += n;
+    }
+  }
+
+  private static void writeInt(WritableByteChannel channel, ByteBuffer buffer, int value) throws IOException {
+    if (buffer.remaining() < 4) {
+      flush(channel, buffer);
+    }
+    buffer.putInt(value);
+  }
+
+  private static void writeInts(WritableByteChannel channel, ByteBuffer buffer, int[] values, int length)
+    throws IOException {
+    for (int i = 0; i < length; ) {
+      if (buffer.remaining() < 4) {
+        flush(channel, buffer);
+      }
+      int n = Math.min(length - i, buffer.remaining() / 4);
+      buffer.asIntBuffer().put(values, i, n);
+      buffer.position(buffer.position() + 4 * n);
+      i += n;
+    }
+  }
+
+  private static void writeShorts(WritableByteChannel channel, ByteBuffer buffer, short[] values, int length)
+    throws IOException {
+    for (int i = 0; i < length; ) {
+      if (buffer.remaining() < 2) {
+        flush(channel, buffer);
+      }
+      int n = Math.min(length - i, buffer.remaining() / 2);
+      buffer.asShortBuffer().put(values, i, n);
+      buffer.position(buffer.position() + 2 * n);
+      i += n;
+    }
+  }
+
+  private static void writeBytes(WritableByteChannel channel, ByteBuffer buffer, byte[] values, int length)
+    throws IOException {
+    for (int i = 0; i < length; ) {
+      if (!buffer.hasRemaining()) {
+        flush(channel, buffer);
+      }
+      int n = Math.min(length - i, buffer.remaining());
+      buffer.put(values, i, n);
+      i += n;
+    }
+  }
+
+  /* A count, then each string as its length and its UTF-8 bytes */
+  private static void writeStrings(WritableByteChannel channel, ByteBuffer buffer, List<String> strings)
+    throws IOException {
+    writeInt(channel, buffer, strings.size());
+    for (String string : strings) {
+      byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+      writeInt(channel, buffer, bytes.length);
+      writeBytes(channel, buffer, bytes, bytes.length);
+    }
+  }
+
+  private static short code(String value, Map<String, Short> codes, List<String> values) {
+    if (value == null) {
+      return -1;
+    }
+    Short code = codes.get(value);
+    if (code == null) {
+      if (values.size() == MAX_CODES) {
+        throw new IllegalArgumentException("More than " + MAX_CODES + " distinct values: " + value);
+      }
+      code = (short)values.size();
+      codes.put(value, code);
+      values.add(value);
+    }
+    return code;
+  }
+}
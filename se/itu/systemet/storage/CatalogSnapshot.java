@@ -0,0 +1,208 @@
+package se.itu.systemet.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import se.itu.systemet.domain.Product;
+
+/**
+ * <p>A copy of the whole product catalog in a compact binary file,
+ * which can be loaded in milliseconds when the application starts.</p>
+ *
+ * <p>The file is memory-mapped when loaded, and laid out in columns:
+ *<pre>
+ * header:     magic "SYSB", format version, time saved (ms), number of products n
+ * dictionary: the distinct product groups, then the distinct types,
+ *             each as a count followed by length-prefixed UTF-8 strings
+ * columns:    double[n] price, double[n] alcohol, int[n] volume, int[n] nr,
+ *             short[n] product group code, short[n] type code (-1 is null)
+ * names:      int[n + 1] offsets into the name heap, then the heap of
+ *             UTF-8 encoded names
+ *</pre>
+ * There is no marker for a missing name: a Product saved without a
+ * name is loaded with the name "".</p>
+ *
+ * <p>The file is written by CatalogColumns, which can also write the
+ * same layout to other channels.</p>
+ *
+ * <p>A snapshot is saved to a temporary file which is then moved in
+ * place, so a reader never sees a half written snapshot.</p>
+ */
+public class CatalogSnapshot {
+
+  // The bytes per Product of the columns price, alcohol, volume, nr, product group and type
+  private static final long COLUMN_BYTES = 8 + 8 + 4 + 4 + 2 + 2;
+
+  private Path file;
+
+  /**
+   * Creates a new CatalogSnapshot stored in the specified file.
+   * @param file The file of this snapshot
+   */
+  public CatalogSnapshot(Path file) {
+    this.file = file;
+  }
+
+  /**
+   * Returns the file used unless the system property
+   * systemet.snapshot.file says otherwise: catalog.snapshot in the
+   * directory .systemet in the user's home directory.
+   * @return The default file for a CatalogSnapshot
+   */
+  public static Path defaultFile() {
+    String file = System.getProperty("systemet.snapshot.file");
+    if (file != null) {
+      return Paths.get(file);
+    }
+    return Paths.get(System.getProperty("user.home"), ".systemet", "catalog.snapshot");
+  }
+
+  /**
+   * Returns the file of this snapshot.
+   * @return The file of this snapshot
+   */
+  public Path file() {
+    return file;
+  }
+
+  /**
+   * Returns true if this snapshot has been saved.
+   * @return true if the file of this snapshot exists
+   */
+  public boolean exists() {
+    return Files.isRegularFile(file);
+  }
+
+  /**
+   * Loads the products of this snapshot.
+   * @return The products of this snapshot, in the order they were saved
+   * (with "" for names which were null)
+   * @throws IOException if the file can't be read, is truncated or
+   * isn't a snapshot
+   */
+  public List<Product> load() throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      if (buffer.remaining() < 20 || buffer.getInt() != CatalogColumns.MAGIC) {
+        throw new IOException(file + " is not a catalog snapshot");
+      }
+      if (buffer.getInt() != CatalogColumns.VERSION) {
+        throw new IOException(file + " is a snapshot of an unknown version");
+      }
+      buffer.getLong(); // time saved
+      int size = buffer.getInt();
+      String[] groups = readStrings(buffer);
+      String[] types = readStrings(buffer);
+      // Check the sizes against the file before allocating, so a damaged file can't ask for huge arrays
+      if (size < 0 || buffer.remaining() < (long)size * COLUMN_BYTES + 4L * (size + 1)) {
+        throw new IOException(file + " is truncated, or not a valid catalog snapshot");
+      }
+      double[] price = new double[size];
+      double[] alcohol = new double[size];
+      int[] volume = new int[size];
+      int[] nr = new int[size];
+      short[] group = new short[size];
+      short[] type = new short[size];
+      int[] offsets = new int[size + 1];
+      readDoubles(buffer, price);
+      readDoubles(buffer, alcohol);
+      readInts(buffer, volume);
+      readInts(buffer, nr);
+      readShorts(buffer, group);
+      readShorts(buffer, type);
+      readInts(buffer, offsets);
+      for (int i = 0; i < size; i++) {
+        if (offsets[i] < 0 || offsets[i] > offsets[i + 1]) {
+          throw new IOException(file + " is not a valid catalog snapshot: bad name offsets");
+        }
+      }
+      if (offsets[size] > buffer.remaining()) {
+        throw new IOException(file + " is truncated, or not a valid catalog snapshot");
+      }
+      byte[] names = new byte[offsets[size]];
+      buffer.get(names);
+      List<Product> products = new ArrayList<>(size);
+      for (int i = 0; i < size; i++) {
+        products.add(new Product.Builder()
+                     .name(new String(names, offsets[i], offsets[i + 1] - offsets[i], StandardCharsets.UTF_8))
+                     .price(price[i])
+                     .alcohol(alcohol[i])
+                     .volume(volume[i])
+                     .nr(nr[i])
+                     .productGroup(group[i] < 0 ? null : groups[group[i]])
+                     .type(type[i] < 0 ? null : types[type[i]])
+                     .build());
+      }
+      return products;
+    } catch (RuntimeException e) { // e.g. BufferUnderflowException for a truncated file
+      throw new IOException(file + " is not a valid catalog snapshot: " + e, e);
+    }
+  }
+
+  /**
+   * Saves products to this snapshot, replacing what was saved before.
+   * @param products The products to save
+   * @throws IOException if the snapshot can't be written
+   */
+  public void save(List<Product> products) throws IOException {
+    CatalogColumns columns = new CatalogColumns(products.size());
+    for (Product product : products) {
+      columns.add(product);
+    }
+    Path directory = file.toAbsolutePath().getParent();
+    Files.createDirectories(directory);
+    Path temporary = Files.createTempFile(directory, "catalog", ".tmp");
+    try {
+      try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+        columns.write(channel);
+        channel.force(true);
+      }
+      Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(temporary);
+    }
+  }
+
+  private static String[] readStrings(ByteBuffer buffer) throws IOException {
+    int count = buffer.getInt();
+    if (count < 0 || count > buffer.remaining() / 4) {
+      throw new IOException("Not a valid catalog snapshot: " + count + " strings");
+    }
+    String[] strings = new String[count];
+    for (int i = 0; i < strings.length; i++) {
+      int length = buffer.getInt();
+      if (length < 0 || length > buffer.remaining()) {
+        throw new IOException("Not a valid catalog snapshot: a string of " + length + " bytes");
+      }
+      byte[] bytes = new byte[length];
+      buffer.get(bytes);
+      strings[i] = new String(bytes, StandardCharsets.UTF_8);
+    }
+    return strings;
+  }
+
+  private static void readDoubles(ByteBuffer buffer, double[] values) {
+    buffer.asDoubleBuffer().get(values);
+    buffer.position(buffer.position() + 8 * values.length);
+  }
+
+  private static void readInts(ByteBuffer buffer, int[] values) {
+    buffer.asIntBuffer().get(values);
+    buffer.position(buffer.position() + 4 * values.length);
+  }
+
+  private static void readShorts(ByteBuffer buffer, short[] values) {
+    buffer.asShortBuffer().get(values);
+    buffer.position(buffer.position() + 2 * values.length);
+  }
+}
@@ -0,0 +1,250 @@
+package se.itu.systemet.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * <p>Scans primitive columns - one array per attribute, with the value
+ * of row i at position i - on all cores.</p>
+ *
+ * <p>The rows are split in chunks which are scanned by the tasks of a
+ * ForkJoinPool. A selection is a bitmap: bit i of the long[] (that is,
+ * <code>bitmap[i &gt;&gt;&gt; 6] &amp; (1L &lt;&lt; i)</code>) is set if
+ * row i is selected. Chunks always start at a multiple of 64 rows, so
+ * every task writes its own words of the bitmap and no locking is
+ * needed.</p>
+ *
+ * <p>Within a chunk, ranges are checked by a RangeKernel: with the
+ * Vector API (jdk.incubator.vector) when the application runs with
+ * --add-modules jdk.incubator.vector, and one value at a time
+ * otherwise, or when the system property systemet.vector is "false".</p>
+ *
+ * <p>Splitting in tasks only pays off for many rows. Below the
+ * threshold - the system property systemet.parallel.threshold, by
+ * default {@link #DEFAULT_THRESHOLD} rows - or when there is only one
+ * core, the columns are scanned sequentially on the calling thread, by
+ * exactly the same code.</p>
+ */
+public class ColumnScan {
+
+  /**
+   * The number of rows below which columns are scanned sequentially,
+   * unless the system property systemet.parallel.threshold says otherwise.
+   */
+  public static final int DEFAULT_THRESHOLD = 1 << 16;
+
+  private static final int THRESHOLD = Integer.getInteger("systemet.parallel.threshold", DEFAULT_THRESHOLD);
+
+  // Rows per task when the scan is split: big enough to be worth a task, small enough to balance
+  private static final int CHUNK = 1 << 13;
+
+  private static final RangeKernel KERNEL = rangeKernel();
+
+  // No instances, please
+  private ColumnScan() {}
+
+  /**
+   * Returns true if a scan of this many rows is split in parallel tasks.
+   * @param size The number of rows
+   * @return true if the rows are scanned in parallel
+   */
+  public static boolean parallel(int size) {
+    return size >= THRESHOLD && ForkJoinPool.getCommonPoolParallelism() > 1;
+  }
+
+  /**
+   * Returns the name of the RangeKernel used by Filter.select().
+   * @return "vector (...)" or "scalar"
+   */
+  public static String kernel() {
+    return KERNEL.toString();
+  }
+
+  /**
+   * <p>Selects the rows for which every column is within its range. All
+   * limits are inclusive, and NaN is never within a range.</p>
+   *
+   * <p>Typical use:
+   *<pre>
+   * long[] bitmap = new ColumnScan.Filter(size)
+   *   .range(alcohol, 4, 6)
+   *   .range(volume, 330, 500)
+   *   .select();
+   *</pre>
+   * </p>
+   */
+  public static class Filter {
+    private int size;
+    private List<Range> ranges = new ArrayList<>();
+
+    /**
+     * Creates a new Filter selecting among the rows 0 to size - 1.
+     * @param size The number of rows
+     */
+    public Filter(int size) {
+      this.size = size;
+    }
+
+    /**
+     * Adds a range which the values of a column must be within.
+     * @param column The column, with at least size values
+     * @param min The smallest value allowed
+     * @param max The largest value allowed
+     * @return This Filter
+     */
+    public Filter range(double[] column, double min, double max) {
+      checkLength(column.length);
+      ranges.add((bitmap, from, to, and) -> KERNEL.select(column, min, max, bitmap, from, to, and));
+      return this;
+    }
+
+    /**
+     * Adds a range which the values of an int column must be within.
+     * @param column The column, with at least size values
+     * @param min The smallest value allowed
+     * @param max The largest value allowed
+     * @return This Filter
+     */
+    public Filter range(int[] column, int min, int max) {
+      checkLength(column.length);
+      ranges.add((bitmap, from, to, and) -> KERNEL.select(column, min, max, bitmap, from, to, and));
+      return this;
+    }
+
+    private void checkLength(int length) {
+      if (length < size) {
+        throw new IllegalArgumentException("A column of " + length + " values for " + size + " rows");
+      }
+    }
+
+    /**
+     * Returns the rows for which every column is within its range, as
+     * a bitmap - all rows if there are no ranges.
+     * @return A bitmap of the selected rows
+     */
+    public long[] select() {
+      long[] bitmap = new long[words(size)];
+      if (ranges.isEmpty()) {
+        Arrays.fill(bitmap, -1L);
+        if ((size & 63) != 0) {
+          bitmap[bitmap.length - 1] = (1L << size) - 1;
+        }
+        return bitmap;
+      }
+      run(size, (from, to) -> {
+          for (int r = 0; r < ranges.size(); r++) {
+            ranges.get(r).select(bitmap, from, to, r > 0);
+          }
+        });
+      return bitmap;
+    }
+  }
+
+  /* One range of a Filter: its column, limits and kernel */
+  private interface Range {
+    void select(long[] bitmap, int from, int to, boolean and);
+  }
+
+  /**
+   * Returns the values of a column computed from the rows, e.g. a
+   * column derived from other columns.
+   * @param size The number of rows
+   * @param function Computes the value of a row - it may be called on
+   * any thread, and in any order
+   * @return The values of the rows
+   */
+  public static double[] compute(int size, IntToDoubleFunction function) {
+    double[] values = new double[size];
+    run(size, (from, to) -> {
+        for (int row = from; row < to; row++) {
+          values[row] = function.applyAsDouble(row);
+        }
+      });
+    return values;
+  }
+
+  /**
+   * Returns the rows set in a bitmap, in increasing order.
+   * @param bitmap The bitmap of rows
+   * @return The rows set in the bitmap
+   */
+  public static int[] rows(long[] bitmap) {
+    int count = 0;
+    for (long word : bitmap) {
+      count += Long.bitCount(word);
+    }
+    int[] rows = new int[count];
+    int k = 0;
+    for (int w = 0; w < bitmap.length; w++) {
+      long word = bitmap[w];
+      while (word != 0) {
+        rows[k++] = (w << 6) + Long.numberOfTrailingZeros(word);
+        word &= word - 1;
+      }
+    }
+    return rows;
+  }
+
+  /*
+   * The VectorRangeKernel if the Vector API is there (and the system
+   * property systemet.vector isn't "false"), or else the ScalarRangeKernel
+   */
+  private static RangeKernel rangeKernel() {
+    if (!"false".equals(System.getProperty("systemet.vector"))) {
+      try {
+        return (RangeKernel)Class.forName("se.itu.systemet.util.VectorRangeKernel")
+          .getDeclaredConstructor().newInstance();
+      } catch (ReflectiveOperationException | LinkageError | UnsupportedOperationException e) {
+        // Not compiled, or run without --add-modules jdk.incubator.vector
+      }
+    }
+    return new ScalarRangeKernel();
+  }
+
+  private static int words(int size) {
+    return (size + 63) >>> 6;
+  }
+
+  /* Scans the rows 0 to size - 1, in chunks on the common pool, or sequentially */
+  private static void run(int size, Chunk chunk) {
+    if (parallel(size)) {
+      ForkJoinPool.commonPool().invoke(new ScanTask(chunk, 0, size));
+    } else if (size > 0) {
+      chunk.scan(0, size);
+    }
+  }
+
+  /**
+   * Scans the rows from (inclusive, a multiple of 64) to to (exclusive).
+   */
+  private interface Chunk {
+    void scan(int from, int to);
+  }
+
+  private static class ScanTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+    private Chunk chunk;
+    private int from;
+    private int to;
+
+    ScanTask(Chunk chunk, int from, int to) {
+      this.chunk = chunk;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from <= CHUNK) {
+        chunk.scan(from, to);
+        return;
+      }
+      int middle = (from + (to - from) / 2) & ~63; // keep the words of the bitmap apart
+      invokeAll(new ScanTask(chunk, from, middle), new ScanTask(chunk, middle, to));
+    }
+  }
+}
@@ -0,0 +1,142 @@
+package se.itu.systemet.util;
+
+/**
+ * <p>Sorts arrays of indexes by primitive keys, without boxing.</p>
+ *
+ * <p>Instead of sorting the data itself, we sort an int[] of positions
+ * into the data, so that <code>keys[indexes[0]]</code> is the smallest
+ * key afterwards. The sort is a stable merge sort.</p>
+ */
+public class IndexSort {
+
+  /**
+   * Compares the elements at two positions, like a Comparator does.
+   */
+  public interface IndexComparator {
+    int compare(int i, int j);
+  }
+
+  // No instances, please
+  private IndexSort() {}
+
+  /**
+   * Returns the indexes 0 to keys.length - 1 ordered by the keys.
+   * @param keys The keys to order the indexes by
+   * @return The indexes ordered by the keys
+   */
+  public static int[] sortedIndexes(double[] keys) {
+    return sortedIndexes(keys.length, (i, j) -> Double.compare(keys[i], keys[j]));
+  }
+
+  /**
+   * Returns the indexes 0 to keys.length - 1 ordered by the keys.
+   * @param keys The keys to order the indexes by
+   * @return The indexes ordered by the keys
+   */
+  public static int[] sortedIndexes(int[] keys) {
+    return sortedIndexes(keys.length, (i, j) -> Integer.compare(keys[i], keys[j]));
+  }
+
+  /**
+   * Returns the indexes 0 to size - 1 ordered by the comparator.
+   * @param size The number of indexes
+   * @param comparator The comparator to order the indexes by
+   * @return The indexes ordered by the comparator
+   */
+  public static int[] sortedIndexes(int size, IndexComparator comparator) {
+    int[] indexes = new int[size];
+    for (int i = 0; i < size; i++) {
+      indexes[i] = i;
+    }
+    sort(indexes, 0, size, comparator);
+    return indexes;
+  }
+
+  /**
+   * Sorts a range of an array of indexes using the comparator.
+   * @param indexes The indexes to sort
+   * @param from The first position to sort (inclusive)
+   * @param to The last position to sort (exclusive)
+   * @param comparator The comparator to order the indexes by
+   */
+  public static void sort(int[] indexes, int from, int to, IndexComparator comparator) {
+    int[] buffer = new int[to - from];
+    mergeSort(indexes, from, to, buffer, comparator);
+  }
+
+  private static void mergeSort(int[] a, int from, int to, int[] buffer, IndexComparator c) {
+    if (to - from < 16) {
+      insertionSort(a, from, to, c);
+      return;
+    }
+    int mid = (from + to) >>> 1;
+    mergeSort(a, from, mid, buffer, c);
+    mergeSort(a, mid, to, buffer, c);
+    if (c.compare(a[mid - 1], a[mid]) <= 0) {
+      return; // already in order
+    }
+    System.arraycopy(a, from, buffer, 0, mid - from);
+    int i = 0;
+    int iEnd = mid - from;
+    int j = mid;
+    int k = from;
+    while (i < iEnd && j < to) {
+      a[k++] = c.compare(a[j], buffer[i]) < 0 ? a[j++] : buffer[i++];
+    }
+    System.arraycopy(buffer, i, a, k, iEnd - i);
+  }
+
+  private static void insertionSort(int[] a, int from, int to, IndexComparator c) {
+    for (int i = from + 1; i < to; i++) {
+      int index = a[i];
+      int j = i - 1;
+      while (j >= from && c.compare(a[j], index) > 0) {
+        a[j + 1] = a[j];
+        j--;
+      }
+      a[j + 1] = index;
+    }
+  }
+
+  /**
+   * Returns the first position in sorted where the value is at
+   * least key, or sorted.length if there is none.
+   * @param sorted Values in ascending order
+   * @param key The value to search for
+   * @return The first position with a value &gt;= key
+   */
+  public static int lowerBound(double[] sorted, double key) {
+    int low = 0;
+    int high = sorted.length;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (sorted[mid] < key) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Returns the first position in sorted where the value is greater
+   * than key, or sorted.length if there is none.
+   * @param sorted Values in ascending order
+   * @param key The value to search for
+   * @return The first position with a value &gt; key
+   */
+  public static int upperBound(double[] sorted, double key) {
+    int low = 0;
+    int high = sorted.length;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (sorted[mid] <= key) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+}
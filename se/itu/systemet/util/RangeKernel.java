@@ -0,0 +1,22 @@
+package se.itu.systemet.util;
+
+/**
+ * Marks the rows of a column whose values are within a range, in a
+ * selection bitmap - the innermost loop of every ColumnScan.select().
+ * There is a scalar implementation, and one using the Vector API when
+ * the jdk.incubator.vector module is there.
+ */
+interface RangeKernel {
+
+  /**
+   * Sets the bits of the rows from (a multiple of 64) to to whose value
+   * is within [min, max] - or, if and is true, clears the bits of those
+   * which are not. NaN is never within a range.
+   */
+  void select(double[] column, double min, double max, long[] bitmap, int from, int to, boolean and);
+
+  /**
+   * Like select() for a double[] column, for an int[] column.
+   */
+  void select(int[] column, int min, int max, long[] bitmap, int from, int to, boolean and);
+}
@@ -0,0 +1,41 @@
+package se.itu.systemet.util;
+
+/**
+ * The RangeKernel which checks one value at a time. It is branch
+ * free, so the JIT can unroll it.
+ */
+class ScalarRangeKernel implements RangeKernel {
+
+  @Override
+  public void select(double[] column, double min, double max, long[] bitmap, int from, int to, boolean and) {
+    for (int word = from >>> 6; word << 6 < to; word++) {
+      int start = word << 6;
+      int end = Math.min(start + 64, to);
+      long bits = 0;
+      for (int row = start; row < end; row++) {
+        double value = column[row];
+        bits |= (value >= min & value <= max ? 1L : 0L) << (row - start);
+      }
+      bitmap[word] = and ? bitmap[word] & bits : bits;
+    }
+  }
+
+  @Override
+  public void select(int[] column, int min, int max, long[] bitmap, int from, int to, boolean and) {
+    for (int word = from >>> 6; word << 6 < to; word++) {
+      int start = word << 6;
+      int end = Math.min(start + 64, to);
+      long bits = 0;
+      for (int row = start; row < end; row++) {
+        int value = column[row];
+        bits |= (value >= min & value <= max ? 1L : 0L) << (row - start);
+      }
+      bitmap[word] = and ? bitmap[word] & bits : bits;
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "scalar";
+  }
+}
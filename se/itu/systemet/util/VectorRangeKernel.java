@@ -0,0 +1,80 @@
+package se.itu.systemet.util;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * <p>The RangeKernel which checks as many values at a time as the CPU
+ * has SIMD lanes for (e.g. 8 doubles or 16 ints with AVX-512), using
+ * the incubating Vector API.</p>
+ *
+ * <p>For each lane the two comparisons give a mask, and the masks of
+ * a word's 64 rows are packed into the word with toLong(). The rows
+ * after the last whole word are left to the ScalarRangeKernel.</p>
+ *
+ * <p>This class needs --add-modules jdk.incubator.vector, both to
+ * compile and to run, so nothing refers to it by name: ColumnScan
+ * loads it by reflection, and uses the ScalarRangeKernel if it can't.</p>
+ */
+class VectorRangeKernel implements RangeKernel {
+
+  private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+  private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+
+  private ScalarRangeKernel scalar = new ScalarRangeKernel();
+
+  VectorRangeKernel() {
+    if (64 % DOUBLES.length() != 0 || 64 % INTS.length() != 0) {
+      throw new UnsupportedOperationException("Lanes which don't divide 64: " + DOUBLES + ", " + INTS);
+    }
+  }
+
+  @Override
+  public void select(double[] column, double min, double max, long[] bitmap, int from, int to, boolean and) {
+    int lanes = DOUBLES.length();
+    int word = from >>> 6;
+    for (; (word << 6) + 64 <= to; word++) {
+      int start = word << 6;
+      long bits = 0;
+      for (int offset = 0; offset < 64; offset += lanes) {
+        DoubleVector values = DoubleVector.fromArray(DOUBLES, column, start + offset);
+        long mask = values.compare(VectorOperators.GE, min)
+          .and(values.compare(VectorOperators.LE, max))
+          .toLong();
+        bits |= mask << offset;
+      }
+      bitmap[word] = and ? bitmap[word] & bits : bits;
+    }
+    if (word << 6 < to) {
+      scalar.select(column, min, max, bitmap, word << 6, to, and);
+    }
+  }
+
+  @Override
+  public void select(int[] column, int min, int max, long[] bitmap, int from, int to, boolean and) {
+    int lanes = INTS.length();
+    int word = from >>> 6;
+    for (; (word << 6) + 64 <= to; word++) {
+      int start = word << 6;
+      long bits = 0;
+      for (int offset = 0; offset < 64; offset += lanes) {
+        IntVector values = IntVector.fromArray(INTS, column, start + offset);
+        long mask = values.compare(VectorOperators.GE, min)
+          .and(values.compare(VectorOperators.LE, max))
+          .toLong();
+        bits |= mask << offset;
+      }
+      bitmap[word] = and ? bitmap[word] & bits : bits;
+    }
+    if (word << 6 < to) {
+      scalar.select(column, min, max, bitmap, word << 6, to, and);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "vector (" + DOUBLES.length() + " doubles, " + INTS.length() + " ints)";
+  }
+}